@@ -0,0 +1,349 @@
+package com.algaworks;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Armazenamento colunar (struct-of-arrays) dos atributos filtráveis dos
+ * contatos. Cada contato ocupa uma linha com colunas primitivas: ID em
+ * {@code long[]}, nascimento em dias desde a época em {@code int[]},
+ * categoria em {@code byte[]}, favoritos em palavras de bits e as formas de
+ * busca de nome/email (minúsculas, sem acentos) codificadas por dicionário.
+ *
+ * As varreduras percorrem apenas esses arrays, sem visitar os objetos
+ * {@link Contato}, e devolvem os IDs aceitos; os contatos são materializados
+ * pelo {@link ContatoStore} somente para as linhas do resultado. Linhas
+ * liberadas são reaproveitadas, então o tamanho das colunas acompanha o
+ * número de contatos vivos.
+ *
+ * As linhas ficam em segmentos, um por partição de lock do store, cada um
+ * com suas colunas, dicionários, mapa primitivo de ID para linha e lock
+ * próprio. Quem indexa já tem o lock da partição do contato, então escritas
+ * em partições diferentes não disputam entre si; o lock de um segmento só é
+ * disputado pela varredura que está passando por ele.
+ *
+ * Os critérios não textuais são avaliados pelo {@link KernelFiltro} (vetorial
+ * quando a Vector API está disponível) em uma máscara de bits; os textuais só
+ * são testados nas linhas que sobram.
+ */
+public class ArmazenamentoColunar implements IndiceContatos {
+
+    static final int SEM_DATA = Integer.MIN_VALUE;
+    static final int SEM_TEXTO = -1;
+
+    private final KernelFiltro kernel;
+
+    private final Segmento[] segmentos = new Segmento[ContatoStore.PARTICOES];
+
+    /**
+     * Critérios avaliáveis diretamente sobre as colunas. Campos nulos (ou
+     * categoria negativa) não restringem o resultado.
+     */
+    public record Criterios(int categoria, Boolean favorito, LocalDate nascimentoInicio,
+            LocalDate nascimentoFim, String nomeBusca, String emailBusca) {
+    }
+
+    public ArmazenamentoColunar() {
+        this(KernelFiltro.disponivel());
+    }
+
+    public ArmazenamentoColunar(KernelFiltro kernel) {
+        this.kernel = kernel;
+        for (int i = 0; i < segmentos.length; i++) {
+            segmentos[i] = new Segmento();
+        }
+    }
+
+    @Override
+    public void indexar(Contato contato) {
+        segmentos[ContatoStore.particao(contato.getId())].indexar(contato);
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        segmentos[ContatoStore.particao(contato.getId())].desindexar(contato.getId());
+    }
+
+    /**
+     * Varre as colunas e devolve os IDs que atendem aos critérios, em ordem
+     * crescente
+     */
+    public long[] filtrar(Criterios criterios) {
+        boolean filtraData = criterios.nascimentoInicio() != null || criterios.nascimentoFim() != null;
+        // SEM_DATA fica sempre fora do intervalo, mesmo sem limite inferior
+        int diaInicio = criterios.nascimentoInicio() != null
+                ? (int) criterios.nascimentoInicio().toEpochDay() : SEM_DATA + 1;
+        int diaFim = criterios.nascimentoFim() != null
+                ? (int) criterios.nascimentoFim().toEpochDay() : Integer.MAX_VALUE;
+        int favorito = criterios.favorito() == null ? KernelFiltro.FAVORITO_QUALQUER
+                : criterios.favorito() ? 1 : 0;
+
+        Resultado resultado = new Resultado();
+        for (Segmento segmento : segmentos) {
+            segmento.filtrar(criterios, favorito, filtraData, diaInicio, diaFim, resultado);
+        }
+        long[] ordenado = Arrays.copyOf(resultado.ids, resultado.quantidade);
+        Arrays.sort(ordenado);
+        return ordenado;
+    }
+
+    public int tamanho() {
+        int tamanho = 0;
+        for (Segmento segmento : segmentos) {
+            tamanho += segmento.tamanho();
+        }
+        return tamanho;
+    }
+
+    // IDs aceitos pelos segmentos, na ordem em que foram varridos
+    private static final class Resultado {
+
+        long[] ids = new long[1024];
+        int quantidade;
+
+        void adicionar(long id) {
+            if (quantidade == ids.length) {
+                ids = Arrays.copyOf(ids, quantidade * 2);
+            }
+            ids[quantidade++] = id;
+        }
+    }
+
+    private final class Segmento {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // A capacidade é sempre múltipla de 64, uma palavra de bits por bloco
+        private long[] ids = new long[64];
+        private int[] nascimentos = new int[64];
+        private byte[] categorias = new byte[64];
+        private int[] codigosNome = new int[64];
+        private int[] codigosEmail = new int[64];
+        private long[] favoritos = new long[1];
+        private long[] ocupadas = new long[1];
+
+        private final DicionarioTexto nomes = new DicionarioTexto();
+        private final DicionarioTexto emails = new DicionarioTexto();
+
+        private final MapaLinhas linhaPorId = new MapaLinhas();
+        private int[] livres = new int[16];
+        private int quantidadeLivres;
+        private int limite;
+
+        void indexar(Contato contato) {
+            lock.writeLock().lock();
+            try {
+                int linha = alocarLinha();
+                linhaPorId.colocar(contato.getId(), linha);
+                ids[linha] = contato.getId();
+                nascimentos[linha] = contato.getDataNascimento() != null
+                        ? (int) contato.getDataNascimento().toEpochDay() : SEM_DATA;
+                categorias[linha] = (byte) contato.getCategoria().ordinal();
+                if (contato.isFavorito()) {
+                    favoritos[linha >>> 6] |= 1L << linha;
+                }
+                codigosNome[linha] = contato.getNome() != null
+                        ? nomes.codificar(contato.getNomeBusca()) : SEM_TEXTO;
+                codigosEmail[linha] = contato.getEmail() != null
+                        ? emails.codificar(contato.getEmailBusca()) : SEM_TEXTO;
+                ocupadas[linha >>> 6] |= 1L << linha;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void desindexar(long id) {
+            lock.writeLock().lock();
+            try {
+                int linha = linhaPorId.remover(id);
+                if (linha < 0) {
+                    return;
+                }
+                if (codigosNome[linha] != SEM_TEXTO) {
+                    nomes.liberar(codigosNome[linha]);
+                }
+                if (codigosEmail[linha] != SEM_TEXTO) {
+                    emails.liberar(codigosEmail[linha]);
+                }
+                ocupadas[linha >>> 6] &= ~(1L << linha);
+                favoritos[linha >>> 6] &= ~(1L << linha);
+                if (quantidadeLivres == livres.length) {
+                    livres = Arrays.copyOf(livres, livres.length * 2);
+                }
+                livres[quantidadeLivres++] = linha;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void filtrar(Criterios criterios, int favorito, boolean filtraData, int diaInicio, int diaFim,
+                Resultado resultado) {
+            lock.readLock().lock();
+            try {
+                if (limite == 0) {
+                    return;
+                }
+                long[] mascara = Arrays.copyOf(ocupadas, (limite + 63) >>> 6);
+                kernel.filtrar(categorias, nascimentos, favoritos, limite, criterios.categoria(), favorito,
+                        filtraData, diaInicio, diaFim, mascara);
+
+                // Predicados de texto são avaliados uma vez por valor distinto do segmento
+                BitSet nomesAceitos = criterios.nomeBusca() != null
+                        ? nomes.aceitos(nome -> nome.contains(criterios.nomeBusca())) : null;
+                BitSet emailsAceitos = criterios.emailBusca() != null
+                        ? emails.aceitos(email -> email.contains(criterios.emailBusca())) : null;
+
+                for (int palavra = 0; palavra < mascara.length; palavra++) {
+                    long bits = mascara[palavra];
+                    while (bits != 0) {
+                        int linha = (palavra << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        if (nomesAceitos != null
+                                && (codigosNome[linha] == SEM_TEXTO || !nomesAceitos.get(codigosNome[linha]))) {
+                            continue;
+                        }
+                        if (emailsAceitos != null
+                                && (codigosEmail[linha] == SEM_TEXTO || !emailsAceitos.get(codigosEmail[linha]))) {
+                            continue;
+                        }
+                        resultado.adicionar(ids[linha]);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int tamanho() {
+            lock.readLock().lock();
+            try {
+                return linhaPorId.tamanho();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int alocarLinha() {
+            if (quantidadeLivres > 0) {
+                return livres[--quantidadeLivres];
+            }
+            if (limite == ids.length) {
+                int capacidade = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacidade);
+                nascimentos = Arrays.copyOf(nascimentos, capacidade);
+                categorias = Arrays.copyOf(categorias, capacidade);
+                codigosNome = Arrays.copyOf(codigosNome, capacidade);
+                codigosEmail = Arrays.copyOf(codigosEmail, capacidade);
+                favoritos = Arrays.copyOf(favoritos, capacidade >>> 6);
+                ocupadas = Arrays.copyOf(ocupadas, capacidade >>> 6);
+            }
+            return limite++;
+        }
+    }
+
+    /**
+     * Mapa de ID para linha com endereçamento aberto em arrays primitivos,
+     * sem objetos por entrada. Remoções deslocam as entradas seguintes da
+     * mesma sequência de sondagem, então não há marcas de removido.
+     */
+    static final class MapaLinhas {
+
+        private static final int VAZIO = -1;
+
+        private long[] chaves = new long[16];
+        private int[] linhas = novasLinhas(16);
+        private int tamanho;
+
+        void colocar(long id, int linha) {
+            if ((tamanho + 1) * 4 > linhas.length * 3) {
+                redimensionar(linhas.length * 2);
+            }
+            int mascara = linhas.length - 1;
+            int posicao = posicao(id, mascara);
+            while (linhas[posicao] != VAZIO) {
+                if (chaves[posicao] == id) {
+                    linhas[posicao] = linha;
+                    return;
+                }
+                posicao = (posicao + 1) & mascara;
+            }
+            chaves[posicao] = id;
+            linhas[posicao] = linha;
+            tamanho++;
+        }
+
+        int obter(long id) {
+            int mascara = linhas.length - 1;
+            for (int posicao = posicao(id, mascara); linhas[posicao] != VAZIO; posicao = (posicao + 1) & mascara) {
+                if (chaves[posicao] == id) {
+                    return linhas[posicao];
+                }
+            }
+            return VAZIO;
+        }
+
+        /**
+         * Remove o ID e devolve a linha dele, ou -1 se não estava no mapa
+         */
+        int remover(long id) {
+            int mascara = linhas.length - 1;
+            int posicao = posicao(id, mascara);
+            while (linhas[posicao] != VAZIO && chaves[posicao] != id) {
+                posicao = (posicao + 1) & mascara;
+            }
+            int linha = linhas[posicao];
+            if (linha == VAZIO) {
+                return VAZIO;
+            }
+            // Puxa para o buraco as entradas que não alcançariam a própria posição
+            int buraco = posicao;
+            for (int seguinte = (buraco + 1) & mascara; linhas[seguinte] != VAZIO; seguinte = (seguinte + 1) & mascara) {
+                int ideal = posicao(chaves[seguinte], mascara);
+                if (((seguinte - ideal) & mascara) >= ((seguinte - buraco) & mascara)) {
+                    chaves[buraco] = chaves[seguinte];
+                    linhas[buraco] = linhas[seguinte];
+                    buraco = seguinte;
+                }
+            }
+            linhas[buraco] = VAZIO;
+            tamanho--;
+            return linha;
+        }
+
+        int tamanho() {
+            return tamanho;
+        }
+
+        private void redimensionar(int capacidade) {
+            long[] chavesAntigas = chaves;
+            int[] linhasAntigas = linhas;
+            chaves = new long[capacidade];
+            linhas = novasLinhas(capacidade);
+            int mascara = capacidade - 1;
+            for (int i = 0; i < linhasAntigas.length; i++) {
+                if (linhasAntigas[i] != VAZIO) {
+                    int posicao = posicao(chavesAntigas[i], mascara);
+                    while (linhas[posicao] != VAZIO) {
+                        posicao = (posicao + 1) & mascara;
+                    }
+                    chaves[posicao] = chavesAntigas[i];
+                    linhas[posicao] = linhasAntigas[i];
+                }
+            }
+        }
+
+        // Os IDs de um segmento têm os bits baixos iguais; a multiplicação espalha pelos altos
+        private static int posicao(long id, int mascara) {
+            long misturado = id * 0x9E3779B97F4A7C15L;
+            return (int) (misturado ^ (misturado >>> 32)) & mascara;
+        }
+
+        private static int[] novasLinhas(int capacidade) {
+            int[] linhas = new int[capacidade];
+            Arrays.fill(linhas, VAZIO);
+            return linhas;
+        }
+    }
+}
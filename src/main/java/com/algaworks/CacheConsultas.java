@@ -0,0 +1,158 @@
+package com.algaworks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache das páginas devolvidas pelas consultas repetidas com os mesmos
+ * parâmetros (filtros, busca, favoritos, categoria). As entradas são
+ * marcadas com a versão do {@link ContatoStore} em que foram calculadas e
+ * só valem enquanto ela for a versão atual: uma escrita invalida o cache
+ * inteiro ao avançar a versão, sem percorrer as entradas, que são
+ * descartadas de uma vez quando a primeira página da versão nova é guardada.
+ *
+ * Um acerto não usa lock: lê a entrada do mapa concorrente, confere a
+ * versão e marca o instante do acesso. Só guardar, descartar e despejar
+ * passam pelo monitor do cache, e isso acontece nas faltas, que já pagam a
+ * execução da consulta.
+ *
+ * O tamanho é limitado pelo peso (contatos nas páginas guardadas, mais um
+ * por entrada). Ao passar do máximo, as entradas acessadas há mais tempo são
+ * despejadas de uma vez até sobrar {@link #FOLGA_DESPEJO} do peso, então a
+ * ordenação por acesso fica amortizada entre as inclusões seguintes. Uma
+ * página só é guardada se foi calculada sobre uma versão estável que não
+ * mudou até o fim do cálculo, então o cache nunca devolve um resultado
+ * anterior a uma escrita já concluída.
+ */
+public class CacheConsultas {
+
+    // Fração do peso máximo que sobra depois de um despejo
+    static final double FOLGA_DESPEJO = 0.9;
+
+    private final ContatoStore store;
+
+    private final long pesoMaximo;
+
+    private final ConcurrentHashMap<Chave, Entrada> entradas = new ConcurrentHashMap<>();
+
+    // Alterados só com o monitor do cache
+    private long versao = -1;
+
+    private long peso;
+
+    private final LongAdder acertos = new LongAdder();
+
+    private final LongAdder faltas = new LongAdder();
+
+    private final LongAdder despejos = new LongAdder();
+
+    /**
+     * Identifica uma consulta: o tipo, o critério já em forma canônica e os
+     * parâmetros da página
+     */
+    public record Chave(String consulta, Object criterio, Ordenacao ordenacao, String cursor, int limite) {
+    }
+
+    private static final class Entrada {
+
+        final Pagina<Contato> pagina;
+
+        final long peso;
+
+        final long versao;
+
+        // Instante do último acesso, para o despejo; sem lock, a ordem é aproximada
+        volatile long acesso = System.nanoTime();
+
+        Entrada(Pagina<Contato> pagina, long peso, long versao) {
+            this.pagina = pagina;
+            this.peso = peso;
+            this.versao = versao;
+        }
+    }
+
+    public CacheConsultas(ContatoStore store, long pesoMaximo) {
+        this.store = store;
+        this.pesoMaximo = pesoMaximo;
+    }
+
+    /**
+     * Página guardada para a chave na versão atual ou, na falta dela, a
+     * calculada pela consulta, que é guardada quando a versão permite
+     */
+    public Pagina<Contato> obter(Chave chave, Supplier<Pagina<Contato>> consulta) {
+        long versaoConsulta = store.versaoEstavel();
+        if (versaoConsulta >= 0) {
+            Entrada entrada = entradas.get(chave);
+            // Uma entrada de outra versão pode ainda não ter sido descartada
+            if (entrada != null && entrada.versao == versaoConsulta) {
+                entrada.acesso = System.nanoTime();
+                acertos.increment();
+                return entrada.pagina;
+            }
+        }
+        faltas.increment();
+        Pagina<Contato> pagina = consulta.get();
+        if (versaoConsulta >= 0 && store.versao() == versaoConsulta) {
+            guardar(chave, pagina, versaoConsulta);
+        }
+        return pagina;
+    }
+
+    /**
+     * Contadores de acertos, faltas e despejos, e o tamanho atual
+     */
+    public synchronized Map<String, Object> estatisticas() {
+        Map<String, Object> estatisticas = new LinkedHashMap<>();
+        estatisticas.put("acertos", acertos.sum());
+        estatisticas.put("faltas", faltas.sum());
+        estatisticas.put("despejos", despejos.sum());
+        estatisticas.put("entradas", entradas.size());
+        estatisticas.put("peso", peso);
+        estatisticas.put("pesoMaximo", pesoMaximo);
+        return estatisticas;
+    }
+
+    private synchronized void guardar(Chave chave, Pagina<Contato> pagina, long versaoConsulta) {
+        if (versaoConsulta < versao) {
+            // Calculada antes de uma escrita que outra consulta já viu
+            return;
+        }
+        if (versaoConsulta > versao) {
+            entradas.clear();
+            peso = 0;
+            versao = versaoConsulta;
+        }
+        long pesoPagina = pagina.itens().size() + 1L;
+        if (pesoPagina > pesoMaximo) {
+            return;
+        }
+        Entrada anterior = entradas.put(chave, new Entrada(pagina, pesoPagina, versaoConsulta));
+        peso += pesoPagina - (anterior != null ? anterior.peso : 0);
+        if (peso > pesoMaximo) {
+            despejar();
+        }
+    }
+
+    // Despeja as acessadas há mais tempo até sobrar a folga; chamado com o monitor
+    private void despejar() {
+        List<Map.Entry<Chave, Entrada>> porAcesso = new ArrayList<>(entradas.entrySet());
+        porAcesso.sort(Comparator.comparingLong(entrada -> entrada.getValue().acesso));
+        long alvo = (long) (pesoMaximo * FOLGA_DESPEJO);
+        for (Map.Entry<Chave, Entrada> entrada : porAcesso) {
+            if (peso <= alvo) {
+                break;
+            }
+            if (entradas.remove(entrada.getKey(), entrada.getValue())) {
+                peso -= entrada.getValue().peso;
+                despejos.increment();
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.algaworks;
 
+import java.util.Optional;
+
 /**
  * Enum que representa as categorias de contatos disponíveis no sistema. Utiliza
  * conceitos avançados de Java como enum com métodos e propriedades.
@@ -37,6 +39,24 @@ public enum Categoria {
         return emoji + " " + descricao;
     }
 
+    /**
+     * Categoria cuja descrição ou nome do enum é exatamente o texto
+     * (case-insensitive, sem emojis), sem a correspondência parcial de
+     * {@link #fromDescricao(String)}
+     */
+    public static Optional<Categoria> buscar(String descricao) {
+        if (descricao == null) {
+            return Optional.empty();
+        }
+        String textoLimpo = descricao.replaceAll("[\\p{So}]", "").trim();
+        for (Categoria categoria : values()) {
+            if (categoria.descricao.equalsIgnoreCase(textoLimpo) || categoria.name().equalsIgnoreCase(textoLimpo)) {
+                return Optional.of(categoria);
+            }
+        }
+        return Optional.empty();
+    }
+
     /**
      * Busca uma categoria pelo nome da descrição (case-insensitive)
      */
@@ -52,11 +72,10 @@ public enum Categoria {
             return OUTROS;
         }
 
-        // Primeiro tenta fazer match exato (case-insensitive)
-        for (Categoria categoria : values()) {
-            if (categoria.descricao.equalsIgnoreCase(textoLimpo)) {
-                return categoria;
-            }
+        // Primeiro tenta fazer match exato (case-insensitive), pela descrição ou pelo nome do enum
+        Optional<Categoria> exata = buscar(textoLimpo);
+        if (exata.isPresent()) {
+            return exata.get();
         }
 
         // Se não encontrar, tenta fazer match parcial
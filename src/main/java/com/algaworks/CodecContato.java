@@ -0,0 +1,86 @@
+package com.algaworks;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Formato binário compacto de um contato, usado pelo log de escrita e pelo
+ * snapshot da {@link PersistenciaWal}. Textos são gravados em UTF-8 com o
+ * tamanho na frente (-1 para nulo) e datas como números, sem reflexão nem
+ * nomes de campo.
+ */
+final class CodecContato {
+
+    private static final long SEM_VALOR = Long.MIN_VALUE;
+
+    private CodecContato() {
+    }
+
+    static void escrever(DataOutput saida, Contato contato) throws IOException {
+        saida.writeLong(contato.getId());
+        saida.writeLong(contato.getVersao());
+        escreverTexto(saida, contato.getNome());
+        escreverTexto(saida, contato.getTelefone());
+        escreverTexto(saida, contato.getEmail());
+        escreverTexto(saida, contato.getEndereco());
+        saida.writeLong(contato.getDataNascimento() != null ? contato.getDataNascimento().toEpochDay() : SEM_VALOR);
+        // Pelo nome, para o arquivo sobreviver a mudanças na ordem do enum
+        escreverTexto(saida, contato.getCategoria().name());
+        saida.writeBoolean(contato.isFavorito());
+        escreverDataHora(saida, contato.getDataCriacao());
+        escreverDataHora(saida, contato.getDataAtualizacao());
+    }
+
+    static Contato ler(ByteBuffer entrada) {
+        long id = entrada.getLong();
+        long versao = entrada.getLong();
+        String nome = lerTexto(entrada);
+        String telefone = lerTexto(entrada);
+        String email = lerTexto(entrada);
+        String endereco = lerTexto(entrada);
+        long diaNascimento = entrada.getLong();
+        Categoria categoria = Categoria.valueOf(lerTexto(entrada));
+        boolean favorito = entrada.get() != 0;
+        LocalDateTime dataCriacao = lerDataHora(entrada);
+        LocalDateTime dataAtualizacao = lerDataHora(entrada);
+        LocalDate dataNascimento = diaNascimento != SEM_VALOR ? LocalDate.ofEpochDay(diaNascimento) : null;
+        return new Contato(new ContatoRegistro(id, nome, telefone, email, endereco, dataNascimento, categoria,
+                favorito, dataCriacao, dataAtualizacao, versao), versao);
+    }
+
+    private static void escreverTexto(DataOutput saida, String texto) throws IOException {
+        if (texto == null) {
+            saida.writeInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        saida.writeInt(bytes.length);
+        saida.write(bytes);
+    }
+
+    private static String lerTexto(ByteBuffer entrada) {
+        int tamanho = entrada.getInt();
+        if (tamanho < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[tamanho];
+        entrada.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void escreverDataHora(DataOutput saida, LocalDateTime dataHora) throws IOException {
+        saida.writeLong(dataHora != null ? dataHora.toEpochSecond(ZoneOffset.UTC) : SEM_VALOR);
+        saida.writeInt(dataHora != null ? dataHora.getNano() : 0);
+    }
+
+    private static LocalDateTime lerDataHora(ByteBuffer entrada) {
+        long segundos = entrada.getLong();
+        int nanos = entrada.getInt();
+        return segundos != SEM_VALOR ? LocalDateTime.ofEpochSecond(segundos, nanos, ZoneOffset.UTC) : null;
+    }
+}
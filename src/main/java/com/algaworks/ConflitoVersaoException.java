@@ -0,0 +1,23 @@
+package com.algaworks;
+
+/**
+ * Lançada quando uma atualização informa uma versão do contato diferente da
+ * atual, indicando que outra escrita aconteceu desde a leitura do cliente.
+ */
+public class ConflitoVersaoException extends RuntimeException {
+
+    private final long versaoAtual;
+
+    public ConflitoVersaoException(Long id, long versaoEsperada, long versaoAtual) {
+        super(mensagem(id, versaoEsperada, versaoAtual));
+        this.versaoAtual = versaoAtual;
+    }
+
+    static String mensagem(Long id, long versaoEsperada, long versaoAtual) {
+        return "Contato " + id + " está na versão " + versaoAtual + ", não na versão " + versaoEsperada;
+    }
+
+    public long getVersaoAtual() {
+        return versaoAtual;
+    }
+}
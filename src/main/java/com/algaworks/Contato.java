@@ -1,11 +1,10 @@
 package com.algaworks;
 
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.EnumType;
+import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.Past;
@@ -18,12 +17,17 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
 public class Contato {
 
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    // Gerado pela sequência do ContatoStore
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @NotBlank(message = "Nome é obrigatório")
@@ -55,8 +59,30 @@ public class Contato {
 
     private LocalDateTime dataAtualizacao;
 
+    // Versão do contato para controle de concorrência otimista; 0 = não informada
+    private long versao;
+
     private boolean novo;
 
+    // Formas normalizadas para a busca, recalculadas pelos setters; quando o
+    // JPA preenche os campos direto, são calculadas no primeiro acesso
+    @Transient
+    private String nomeBusca;
+
+    @Transient
+    private String telefoneDigitos;
+
+    @Transient
+    private String emailBusca;
+
+    @Transient
+    private String enderecoBusca;
+
+    // JSON já gerado pelo ModuloJsonContato; só para contatos publicados no
+    // store, que não são mais alterados
+    @Transient
+    private volatile ModuloJsonContato.Serializado jsonSerializado;
+
     // Construtor padrão
     public Contato() {
         this.dataCriacao = LocalDateTime.now();
@@ -70,6 +96,8 @@ public class Contato {
         this.nome = nome;
         this.telefone = telefone;
         this.novo = true;
+        this.nomeBusca = NormalizadorTexto.normalizar(nome);
+        this.telefoneDigitos = NormalizadorTexto.digitos(telefone);
     }
 
     // Construtor completo
@@ -81,6 +109,27 @@ public class Contato {
         this.dataNascimento = dataNascimento;
         this.categoria = categoria != null ? categoria : Categoria.OUTROS;
         this.favorito = favorito;
+        this.emailBusca = NormalizadorTexto.normalizar(email);
+        this.enderecoBusca = NormalizadorTexto.normalizar(endereco);
+    }
+
+    // Construtor a partir do registro imutável, sem ler o relógio
+    Contato(ContatoRegistro registro, long versao) {
+        this.id = registro.id();
+        this.nome = registro.nome();
+        this.telefone = registro.telefone();
+        this.email = registro.email();
+        this.endereco = registro.endereco();
+        this.dataNascimento = registro.dataNascimento();
+        this.categoria = registro.categoria() != null ? registro.categoria() : Categoria.OUTROS;
+        this.favorito = registro.favorito();
+        this.dataCriacao = registro.dataCriacao();
+        this.dataAtualizacao = registro.dataAtualizacao();
+        this.versao = versao;
+        this.nomeBusca = NormalizadorTexto.normalizar(nome);
+        this.telefoneDigitos = NormalizadorTexto.digitos(telefone);
+        this.emailBusca = NormalizadorTexto.normalizar(email);
+        this.enderecoBusca = NormalizadorTexto.normalizar(endereco);
     }
 
     // Validação customizada para verificar se a data de nascimento é razoável
@@ -123,17 +172,17 @@ public class Contato {
 
     public String getDataNascimentoFormatada() {
         return dataNascimento != null
-                ? dataNascimento.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) : "";
+                ? dataNascimento.format(FORMATO_DATA) : "";
     }
 
     public String getDataCriacaoFormatada() {
         return dataCriacao != null
-                ? dataCriacao.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : "";
+                ? dataCriacao.format(FORMATO_DATA_HORA) : "";
     }
 
     public String getDataAtualizacaoFormatada() {
         return dataAtualizacao != null
-                ? dataAtualizacao.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) : "";
+                ? dataAtualizacao.format(FORMATO_DATA_HORA) : "";
     }
 
     public int getIdade() {
@@ -172,6 +221,7 @@ public class Contato {
 
     public void setNome(String nome) {
         this.nome = nome;
+        this.nomeBusca = NormalizadorTexto.normalizar(nome);
         atualizarDataModificacao();
     }
 
@@ -181,6 +231,7 @@ public class Contato {
 
     public void setTelefone(String telefone) {
         this.telefone = telefone;
+        this.telefoneDigitos = NormalizadorTexto.digitos(telefone);
         atualizarDataModificacao();
     }
 
@@ -190,6 +241,7 @@ public class Contato {
 
     public void setEmail(String email) {
         this.email = email;
+        this.emailBusca = NormalizadorTexto.normalizar(email);
         atualizarDataModificacao();
     }
 
@@ -199,9 +251,62 @@ public class Contato {
 
     public void setEndereco(String endereco) {
         this.endereco = endereco;
+        this.enderecoBusca = NormalizadorTexto.normalizar(endereco);
         atualizarDataModificacao();
     }
 
+    /**
+     * Nome em minúsculas e sem acentos, para a busca
+     */
+    @JsonIgnore
+    public String getNomeBusca() {
+        if (nomeBusca == null && nome != null) {
+            nomeBusca = NormalizadorTexto.normalizar(nome);
+        }
+        return nomeBusca;
+    }
+
+    /**
+     * Só os dígitos do telefone, para a busca
+     */
+    @JsonIgnore
+    public String getTelefoneDigitos() {
+        if (telefoneDigitos == null && telefone != null) {
+            telefoneDigitos = NormalizadorTexto.digitos(telefone);
+        }
+        return telefoneDigitos;
+    }
+
+    /**
+     * Email em minúsculas e sem acentos, para a busca
+     */
+    @JsonIgnore
+    public String getEmailBusca() {
+        if (emailBusca == null && email != null) {
+            emailBusca = NormalizadorTexto.normalizar(email);
+        }
+        return emailBusca;
+    }
+
+    /**
+     * Endereço em minúsculas e sem acentos, para a busca
+     */
+    @JsonIgnore
+    public String getEnderecoBusca() {
+        if (enderecoBusca == null && endereco != null) {
+            enderecoBusca = NormalizadorTexto.normalizar(endereco);
+        }
+        return enderecoBusca;
+    }
+
+    ModuloJsonContato.Serializado jsonSerializado() {
+        return jsonSerializado;
+    }
+
+    void guardarJsonSerializado(ModuloJsonContato.Serializado jsonSerializado) {
+        this.jsonSerializado = jsonSerializado;
+    }
+
     public LocalDate getDataNascimento() {
         return dataNascimento;
     }
@@ -245,6 +350,14 @@ public class Contato {
         this.dataAtualizacao = dataAtualizacao;
     }
 
+    public long getVersao() {
+        return versao;
+    }
+
+    public void setVersao(long versao) {
+        this.versao = versao;
+    }
+
     public void setNovo(boolean novo) {
         this.novo = novo;
     }
@@ -276,6 +389,7 @@ public class Contato {
                 + ", email='" + email + '\''
                 + ", categoria=" + categoria
                 + ", favorito=" + favorito
+                + ", versao=" + versao
                 + '}';
     }
 }
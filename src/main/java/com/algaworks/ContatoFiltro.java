@@ -9,6 +9,7 @@ import java.util.Optional;
  */
 public class ContatoFiltro {
 
+    private Optional<Long> id = Optional.empty();
     private Optional<String> nome = Optional.empty();
     private Optional<String> telefone = Optional.empty();
     private Optional<String> email = Optional.empty();
@@ -22,6 +23,10 @@ public class ContatoFiltro {
     }
 
     // Getters
+    public Optional<Long> getId() {
+        return id;
+    }
+
     public Optional<String> getNome() {
         return nome;
     }
@@ -57,6 +62,11 @@ public class ContatoFiltro {
 
         private ContatoFiltro filtro = new ContatoFiltro();
 
+        public Builder id(Long id) {
+            filtro.id = Optional.ofNullable(id);
+            return this;
+        }
+
         public Builder nome(String nome) {
             filtro.nome = Optional.ofNullable(nome);
             return this;
@@ -105,7 +115,7 @@ public class ContatoFiltro {
      * Verifica se o filtro está vazio (sem critérios)
      */
     public boolean isEmpty() {
-        return nome.isEmpty() && telefone.isEmpty() && email.isEmpty()
+        return id.isEmpty() && nome.isEmpty() && telefone.isEmpty() && email.isEmpty()
                 && categoria.isEmpty() && favorito.isEmpty()
                 && dataNascimentoInicio.isEmpty() && dataNascimentoFim.isEmpty();
     }
@@ -113,11 +123,14 @@ public class ContatoFiltro {
     @Override
     public String toString() {
         return "ContatoFiltro{"
-                + "nome=" + nome.orElse("null")
+                + "id=" + id.orElse(null)
+                + ", nome=" + nome.orElse("null")
                 + ", telefone=" + telefone.orElse("null")
                 + ", email=" + email.orElse("null")
                 + ", categoria=" + categoria.map(Categoria::getDescricao).orElse("null")
                 + ", favorito=" + favorito.orElse(null)
+                + ", dataNascimentoInicio=" + dataNascimentoInicio.orElse(null)
+                + ", dataNascimentoFim=" + dataNascimentoFim.orElse(null)
                 + '}';
     }
 }
@@ -0,0 +1,35 @@
+package com.algaworks;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Representação imutável de um contato. As alterações produzem um novo
+ * registro inteiro, que o {@link ContatoStore} publica de uma só vez no lugar
+ * do anterior; o relógio é lido uma única vez por quem chama e repassado.
+ */
+public record ContatoRegistro(Long id, String nome, String telefone, String email, String endereco,
+        LocalDate dataNascimento, Categoria categoria, boolean favorito,
+        LocalDateTime dataCriacao, LocalDateTime dataAtualizacao, long versao) {
+
+    public static ContatoRegistro de(Contato contato) {
+        return new ContatoRegistro(contato.getId(), contato.getNome(), contato.getTelefone(),
+                contato.getEmail(), contato.getEndereco(), contato.getDataNascimento(),
+                contato.getCategoria(), contato.isFavorito(), contato.getDataCriacao(),
+                contato.getDataAtualizacao(), contato.getVersao());
+    }
+
+    /**
+     * Novo registro com os campos editáveis de outro contato
+     */
+    public ContatoRegistro comDados(Contato dados, LocalDateTime agora) {
+        return new ContatoRegistro(id, dados.getNome(), dados.getTelefone(), dados.getEmail(),
+                dados.getEndereco(), dados.getDataNascimento(), dados.getCategoria(), dados.isFavorito(),
+                dataCriacao, agora, versao);
+    }
+
+    public ContatoRegistro comFavorito(boolean favorito, LocalDateTime agora) {
+        return new ContatoRegistro(id, nome, telefone, email, endereco, dataNascimento, categoria,
+                favorito, dataCriacao, agora, versao);
+    }
+}
@@ -1,16 +1,31 @@
 package com.algaworks;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.validation.BindingResult;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/contatos")
@@ -21,13 +36,40 @@ public class ContatoRestController {
     @Autowired
     private ContatoService contatoService;
 
+    @Autowired
+    private ImportadorContatos importador;
+
+    @Autowired
+    private ExportadorContatos exportador;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FeedAlteracoes feed;
+
+    @Autowired
+    private LoteContatos lote;
+
+    // Início desta execução, na ETag: as versões do store e dos contatos
+    // recomeçam a cada inicialização e repetiriam ETags de antes dela
+    private final String execucao = Long.toString(System.currentTimeMillis(), 36);
+
     // GET /api/contatos - Listar todos os contatos
     @GetMapping
-    public ResponseEntity<ApiResponse<List<Contato>>> listarTodos() {
+    public ResponseEntity<ApiResponse<List<Contato>>> listarTodos(@RequestParam(required = false) String ordenar,
+                                                                  @RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer limite,
+                                                                  WebRequest request) {
         logger.info("API: Listando todos os contatos");
+        if (listagemNaoModificada(request)) {
+            return null;
+        }
         try {
-            List<Contato> contatos = contatoService.buscarTodos();
-            return ResponseEntity.ok(new ApiResponse<>(true, "Contatos listados com sucesso", contatos));
+            Pagina<Contato> pagina = contatoService.buscarTodos(ordenar, cursor, limite);
+            return ResponseEntity.ok(ApiResponse.pagina("Contatos listados com sucesso", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
         } catch (Exception e) {
             logger.error("Erro ao listar contatos: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -37,11 +79,15 @@ public class ContatoRestController {
 
     // GET /api/contatos/{id} - Buscar contato por ID
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<Contato>> buscarPorId(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<Contato>> buscarPorId(@PathVariable Long id, WebRequest request) {
         logger.info("API: Buscando contato por ID: {}", id);
         try {
             Optional<Contato> contato = contatoService.buscarPorId(id);
             if (contato.isPresent()) {
+                // A versão do próprio contato: muda só quando ele muda ou o dia vira
+                if (request.checkNotModified(etag(contato.get().getVersao()))) {
+                    return null;
+                }
                 return ResponseEntity.ok(new ApiResponse<>(true, "Contato encontrado", contato.get()));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -97,6 +143,10 @@ public class ContatoRestController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(new ApiResponse<>(false, "Contato não encontrado", null));
             }
+        } catch (ConflitoVersaoException e) {
+            logger.warn("Conflito de versão ao atualizar contato ID {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ApiResponse<>(false, e.getMessage(), null));
         } catch (Exception e) {
             logger.error("Erro ao atualizar contato ID {}: {}", id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -143,12 +193,31 @@ public class ContatoRestController {
     }
 
     // GET /api/contatos/busca?q=texto - Buscar por texto
+    // GET /api/contatos/busca?q=texto&distancia=2 - Busca aproximada por nome, da mais próxima à mais distante
     @GetMapping("/busca")
-    public ResponseEntity<ApiResponse<List<Contato>>> buscarPorTexto(@RequestParam String q) {
+    public ResponseEntity<ApiResponse<List<Contato>>> buscarPorTexto(@RequestParam String q,
+                                                                     @RequestParam(required = false) Integer distancia,
+                                                                     @RequestParam(required = false) String ordenar,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer limite,
+                                                                     WebRequest request) {
         logger.info("API: Buscando contatos por texto: '{}'", q);
+        if (listagemNaoModificada(request)) {
+            return null;
+        }
         try {
-            List<Contato> contatos = contatoService.buscarPorTexto(q);
-            return ResponseEntity.ok(new ApiResponse<>(true, "Busca realizada com sucesso", contatos));
+            Pagina<Contato> pagina;
+            if (distancia != null) {
+                if (ordenar != null) {
+                    throw new IllegalArgumentException("A busca aproximada é ordenada pela distância e não aceita ordenação");
+                }
+                pagina = contatoService.buscarAproximado(q, distancia, cursor, limite);
+            } else {
+                pagina = contatoService.buscarPorTexto(q, ordenar, cursor, limite);
+            }
+            return ResponseEntity.ok(ApiResponse.pagina("Busca realizada com sucesso", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
         } catch (Exception e) {
             logger.error("Erro na busca por texto: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -156,13 +225,37 @@ public class ContatoRestController {
         }
     }
 
+    // GET /api/contatos/autocompletar?prefixo=ana&limite=5 - Sugestões por prefixo do nome
+    @GetMapping("/autocompletar")
+    public ResponseEntity<ApiResponse<List<Contato>>> autocompletar(@RequestParam String prefixo,
+                                                                    @RequestParam(required = false) Integer limite) {
+        try {
+            List<Contato> sugestoes = contatoService.autocompletar(prefixo, limite);
+            return ResponseEntity.ok(new ApiResponse<>(true, "Sugestões obtidas com sucesso", sugestoes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("Erro no autocompletar: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "Erro interno do servidor", null));
+        }
+    }
+
     // GET /api/contatos/favoritos - Listar favoritos
     @GetMapping("/favoritos")
-    public ResponseEntity<ApiResponse<List<Contato>>> listarFavoritos() {
+    public ResponseEntity<ApiResponse<List<Contato>>> listarFavoritos(@RequestParam(required = false) String ordenar,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(required = false) Integer limite,
+                                                                      WebRequest request) {
         logger.info("API: Listando contatos favoritos");
+        if (listagemNaoModificada(request)) {
+            return null;
+        }
         try {
-            List<Contato> favoritos = contatoService.buscarFavoritos();
-            return ResponseEntity.ok(new ApiResponse<>(true, "Favoritos listados com sucesso", favoritos));
+            Pagina<Contato> pagina = contatoService.buscarFavoritos(ordenar, cursor, limite);
+            return ResponseEntity.ok(ApiResponse.pagina("Favoritos listados com sucesso", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
         } catch (Exception e) {
             logger.error("Erro ao listar favoritos: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -172,12 +265,21 @@ public class ContatoRestController {
 
     // GET /api/contatos/categoria/{categoria} - Listar por categoria
     @GetMapping("/categoria/{categoria}")
-    public ResponseEntity<ApiResponse<List<Contato>>> listarPorCategoria(@PathVariable String categoria) {
+    public ResponseEntity<ApiResponse<List<Contato>>> listarPorCategoria(@PathVariable String categoria,
+                                                                         @RequestParam(required = false) String ordenar,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer limite,
+                                                                         WebRequest request) {
         logger.info("API: Listando contatos por categoria: {}", categoria);
+        if (listagemNaoModificada(request)) {
+            return null;
+        }
         try {
             Categoria cat = Categoria.fromDescricao(categoria);
-            List<Contato> contatos = contatoService.buscarPorCategoria(cat);
-            return ResponseEntity.ok(new ApiResponse<>(true, "Contatos da categoria listados", contatos));
+            Pagina<Contato> pagina = contatoService.buscarPorCategoria(cat, ordenar, cursor, limite);
+            return ResponseEntity.ok(ApiResponse.pagina("Contatos da categoria listados", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
         } catch (Exception e) {
             logger.error("Erro ao listar por categoria: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -187,8 +289,13 @@ public class ContatoRestController {
 
     // GET /api/contatos/estatisticas - Obter estatísticas
     @GetMapping("/estatisticas")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> obterEstatisticas() {
+    public ResponseEntity<ApiResponse<Map<String, Object>>> obterEstatisticas(WebRequest request) {
         logger.info("API: Obtendo estatísticas");
+        // A média de idade depende da data corrente, que entra na ETag junto com a versão
+        long versao = contatoService.versaoEstavel();
+        if (versao >= 0 && request.checkNotModified(etag(versao))) {
+            return null;
+        }
         try {
             Map<String, Object> estatisticas = contatoService.obterEstatisticas();
             return ResponseEntity.ok(new ApiResponse<>(true, "Estatísticas obtidas com sucesso", estatisticas));
@@ -199,6 +306,50 @@ public class ContatoRestController {
         }
     }
 
+    // GET /api/contatos/alteracoes - Feed de alterações em Server-Sent Events; retoma pelo Last-Event-ID
+    @GetMapping(value = "/alteracoes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> assinarAlteracoes(
+            @RequestHeader(value = "Last-Event-ID", required = false) String ultimoEvento) {
+        Long sequencia = null;
+        if (ultimoEvento != null && !ultimoEvento.isBlank()) {
+            try {
+                sequencia = Long.parseLong(ultimoEvento.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Feed: Last-Event-ID inválido: '{}'", ultimoEvento);
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        return ResponseEntity.ok(feed.assinar(sequencia));
+    }
+
+    // GET /api/contatos/sincronizacao?desde=N - Alterações compactadas por ID desde a marca N
+    @GetMapping("/sincronizacao")
+    public ResponseEntity<ApiResponse<RegistroAlteracoes.Sincronizacao>> sincronizar(@RequestParam long desde,
+                                                                                   @RequestParam(required = false) Integer limite) {
+        logger.info("API: Sincronizando alterações desde {}", desde);
+        try {
+            RegistroAlteracoes.Sincronizacao sincronizacao = contatoService.sincronizar(desde, limite);
+            String mensagem = sincronizacao.ressincronizar()
+                    ? "Marca fora do registro de alterações, recarregue todos os contatos"
+                    : "Alterações obtidas com sucesso";
+            return ResponseEntity.ok(new ApiResponse<>(true, mensagem, sincronizacao));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("Erro na sincronização: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "Erro interno do servidor", null));
+        }
+    }
+
+    // GET /api/contatos/estatisticas/cache - Contadores do cache de consultas, sem ETag
+    @GetMapping("/estatisticas/cache")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> obterEstatisticasCache() {
+        logger.info("API: Obtendo estatísticas do cache de consultas");
+        return ResponseEntity.ok(new ApiResponse<>(true, "Estatísticas do cache obtidas com sucesso",
+                contatoService.obterEstatisticasCache()));
+    }
+
     // GET /api/categorias - Listar categorias
     @GetMapping("/categorias")
     public ResponseEntity<ApiResponse<List<Categoria>>> listarCategorias() {
@@ -215,11 +366,16 @@ public class ContatoRestController {
 
     // POST /api/contatos/filtros - Buscar com filtros avançados
     @PostMapping("/filtros")
-    public ResponseEntity<ApiResponse<List<Contato>>> buscarComFiltros(@RequestBody ContatoFiltro filtro) {
+    public ResponseEntity<ApiResponse<List<Contato>>> buscarComFiltros(@RequestBody ContatoFiltro filtro,
+                                                                       @RequestParam(required = false) String ordenar,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(required = false) Integer limite) {
         logger.info("API: Buscando contatos com filtros: {}", filtro);
         try {
-            List<Contato> contatos = contatoService.buscarComFiltros(filtro);
-            return ResponseEntity.ok(new ApiResponse<>(true, "Filtro aplicado com sucesso", contatos));
+            Pagina<Contato> pagina = contatoService.buscarComFiltros(filtro, ordenar, cursor, limite);
+            return ResponseEntity.ok(ApiResponse.pagina("Filtro aplicado com sucesso", pagina));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
         } catch (Exception e) {
             logger.error("Erro ao aplicar filtros: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -227,11 +383,142 @@ public class ContatoRestController {
         }
     }
 
+    // POST /api/contatos/filtros/explicar - Explicar o plano de execução dos filtros
+    @PostMapping("/filtros/explicar")
+    public ResponseEntity<ApiResponse<PlanoConsulta.Explicacao>> explicarFiltros(@RequestBody ContatoFiltro filtro) {
+        logger.info("API: Explicando plano dos filtros: {}", filtro);
+        try {
+            PlanoConsulta.Explicacao explicacao = contatoService.explicarFiltros(filtro);
+            return ResponseEntity.ok(new ApiResponse<>(true, "Plano de execução gerado", explicacao));
+        } catch (Exception e) {
+            logger.error("Erro ao explicar filtros: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "Erro interno do servidor", null));
+        }
+    }
+
+    // POST /api/contatos/importacao - Importar contatos em massa (CSV ou NDJSON)
+    @PostMapping(value = "/importacao", consumes = { "text/csv", "application/x-ndjson" })
+    public ResponseEntity<ApiResponse<ImportadorContatos.Resultado>> importar(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String tipo, InputStream corpo) {
+        MediaType mediaType = MediaType.parseMediaType(tipo);
+        FormatoContatos formato = FormatoContatos.de(mediaType);
+        logger.info("API: Importando contatos em {}", formato);
+        try {
+            Charset charset = mediaType.getCharset() != null ? mediaType.getCharset() : StandardCharsets.UTF_8;
+            ImportadorContatos.Resultado resultado = importador.importar(corpo, formato, charset);
+            String mensagem = resultado.rejeitados() == 0 ? "Contatos importados com sucesso"
+                    : "Importação concluída com " + resultado.rejeitados() + " linhas rejeitadas";
+            return ResponseEntity.ok(new ApiResponse<>(true, mensagem, resultado));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Importação recusada: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("Erro ao importar contatos: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "Erro interno do servidor", null));
+        }
+    }
+
+    // POST /api/contatos/lote - Inclusões, atualizações e remoções em uma requisição, opcionalmente atômicas
+    @PostMapping("/lote")
+    public ResponseEntity<ApiResponse<LoteContatos.Resultado>> executarLote(
+            @RequestBody LoteContatos.Requisicao requisicao) {
+        int operacoes = requisicao.operacoes() != null ? requisicao.operacoes().size() : 0;
+        logger.info("API: Executando lote de {} operações (atômico: {})", operacoes, requisicao.atomico());
+        try {
+            LoteContatos.Resultado resultado = lote.executar(requisicao);
+            if (resultado.falhas() == 0) {
+                return ResponseEntity.ok(new ApiResponse<>(true, "Lote aplicado com sucesso", resultado));
+            }
+            if (resultado.aplicado()) {
+                return ResponseEntity.status(HttpStatus.MULTI_STATUS)
+                        .body(new ApiResponse<>(false, "Lote aplicado parcialmente", resultado));
+            }
+            return ResponseEntity.unprocessableEntity()
+                    .body(new ApiResponse<>(false, "Lote atômico não aplicado: houve falhas", resultado));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(false, e.getMessage(), null));
+        } catch (Exception e) {
+            logger.error("Erro ao executar lote: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse<>(false, "Erro interno do servidor", null));
+        }
+    }
+
+    // GET /api/contatos/exportacao - Exportar contatos em streaming (NDJSON ou CSV)
+    @GetMapping("/exportacao")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam(defaultValue = "ndjson") String formato,
+            @RequestParam(required = false) String nome,
+            @RequestParam(required = false) String telefone,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) Categoria categoria,
+            @RequestParam(required = false) Boolean favorito,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataNascimentoInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataNascimentoFim) {
+        logger.info("API: Exportando contatos em {}", formato);
+        FormatoContatos formatoExportacao;
+        try {
+            formatoExportacao = FormatoContatos.de(formato);
+        } catch (IllegalArgumentException e) {
+            // O corpo da resposta é sempre um StreamingResponseBody, então o erro é serializado aqui
+            ApiResponse<Void> erro = new ApiResponse<>(false, e.getMessage(), null);
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(saida -> objectMapper.writeValue(saida, erro));
+        }
+
+        ContatoFiltro filtro = ContatoFiltro.builder()
+                .nome(nome)
+                .telefone(telefone)
+                .email(email)
+                .categoria(categoria)
+                .favorito(favorito)
+                .dataNascimentoInicio(dataNascimentoInicio)
+                .dataNascimentoFim(dataNascimentoFim)
+                .build();
+        // O stream é aberto aqui, sobre o snapshot do momento da requisição, e consumido na escrita da resposta
+        Stream<Contato> contatos = contatoService.exportar(filtro);
+        StreamingResponseBody corpo = saida -> {
+            try {
+                exportador.exportar(contatos, formatoExportacao, saida);
+            } catch (IOException e) {
+                // A resposta já começou; só resta registrar que o cliente desconectou
+                logger.warn("Exportação interrompida: {}", e.getMessage());
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(formatoExportacao.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"contatos." + formatoExportacao.getExtensao() + "\"")
+                .body(corpo);
+    }
+
+    // ETag das listagens: a versão estável do store, lida antes da consulta,
+    // então o conteúdo entregue é no mínimo tão novo quanto ela. Com um
+    // If-None-Match igual, responde 304 sem consultar nem serializar; durante
+    // uma escrita não há versão estável e a resposta sai sem ETag.
+    private boolean listagemNaoModificada(WebRequest request) {
+        long versao = contatoService.versaoEstavel();
+        return versao >= 0 && request.checkNotModified(etag(versao));
+    }
+
+    // Idade e validação da data de nascimento no corpo dependem do dia, o
+    // mesmo em que o ModuloJsonContato guarda o JSON de cada contato
+    private String etag(long versao) {
+        return "\"" + execucao + "-" + versao + "-"
+                + ModuloJsonContato.hoje().format(DateTimeFormatter.BASIC_ISO_DATE) + "\"";
+    }
+
     // Classe interna para padronizar respostas da API
     public static class ApiResponse<T> {
         private boolean success;
         private String message;
         private T data;
+        // Cursor da próxima página nas listagens paginadas; omitido nas demais respostas
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String next;
         private long timestamp;
 
         public ApiResponse(boolean success, String message, T data) {
@@ -241,6 +528,13 @@ public class ContatoRestController {
             this.timestamp = System.currentTimeMillis();
         }
 
+        // Resposta de uma listagem paginada: os itens da página e o cursor da próxima
+        public static <E> ApiResponse<List<E>> pagina(String message, Pagina<E> pagina) {
+            ApiResponse<List<E>> resposta = new ApiResponse<>(true, message, pagina.itens());
+            resposta.next = pagina.proximo();
+            return resposta;
+        }
+
         // Getters e Setters
         public boolean isSuccess() { return success; }
         public void setSuccess(boolean success) { this.success = success; }
@@ -251,6 +545,9 @@ public class ContatoRestController {
         public T getData() { return data; }
         public void setData(T data) { this.data = data; }
         
+        public String getNext() { return next; }
+        public void setNext(String next) { this.next = next; }
+        
         public long getTimestamp() { return timestamp; }
         public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     }
@@ -1,11 +1,17 @@
 package com.algaworks;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.LongFunction;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -18,22 +24,114 @@ public class ContatoService {
 
     private static final Logger logger = LoggerFactory.getLogger(ContatoService.class);
 
-    private static final List<Contato> LISTA_CONTATOS = new ArrayList<>();
+    /**
+     * Maior distância de edição aceita por palavra na busca aproximada
+     */
+    public static final int DISTANCIA_MAXIMA = 3;
+
+    /**
+     * Peso máximo padrão do cache de consultas, em contatos guardados
+     */
+    public static final long PESO_MAXIMO_CACHE = 100_000;
+
+    /**
+     * Remoções guardadas por padrão para a sincronização incremental
+     */
+    public static final int REMOCOES_SINCRONIZACAO = 10_000;
+
+    private static final Comparator<Aproximado> ORDEM_APROXIMADOS = Comparator
+            .comparingInt(Aproximado::distancia)
+            .thenComparing(aproximado -> aproximado.contato().getId());
+
+    private final ContatoStore store;
+
+    private final IndiceCategoria indiceCategoria = new IndiceCategoria();
+
+    private final IndiceFavoritos indiceFavoritos = new IndiceFavoritos();
+
+    private final IndiceTrigramas indiceTrigramas = new IndiceTrigramas();
+
+    private final IndiceDataNascimento indiceDataNascimento = new IndiceDataNascimento();
+
+    private final IndiceOrdenacao indiceOrdenacao = new IndiceOrdenacao();
+
+    private final IndiceBkTree indiceBkTree = new IndiceBkTree();
+
+    private final IndiceAutocompletar indiceAutocompletar = new IndiceAutocompletar();
+
+    private final EstatisticasContatos estatisticas = new EstatisticasContatos();
+
+    private final ArmazenamentoColunar colunar = new ArmazenamentoColunar();
+
+    private final PlanejadorConsultas planejador;
+
+    private final CacheConsultas cache;
+
+    private final RegistroAlteracoes registroAlteracoes;
 
-    static {
+    public ContatoService(ContatoStore store) {
+        this(store, Optional.empty());
+    }
+
+    public ContatoService(ContatoStore store, Optional<PersistenciaContatos> persistencia) {
+        this(store, persistencia, PESO_MAXIMO_CACHE);
+    }
+
+    public ContatoService(ContatoStore store, Optional<PersistenciaContatos> persistencia, long pesoMaximoCache) {
+        this(store, persistencia, pesoMaximoCache, REMOCOES_SINCRONIZACAO);
+    }
+
+    @Autowired
+    public ContatoService(ContatoStore store, Optional<PersistenciaContatos> persistencia,
+            @Value("${contatos.cache.peso-maximo:100000}") long pesoMaximoCache,
+            @Value("${contatos.sincronizacao.remocoes:10000}") int remocoesSincronizacao) {
+        this.store = store;
+        this.cache = new CacheConsultas(store, pesoMaximoCache);
+        this.registroAlteracoes = new RegistroAlteracoes(remocoesSincronizacao);
+        store.registrarIndice(indiceCategoria);
+        store.registrarIndice(indiceFavoritos);
+        store.registrarIndice(indiceTrigramas);
+        store.registrarIndice(indiceDataNascimento);
+        store.registrarIndice(indiceOrdenacao);
+        store.registrarIndice(indiceBkTree);
+        store.registrarIndice(indiceAutocompletar);
+        store.registrarIndice(estatisticas);
+        store.registrarIndice(colunar);
+        planejador = new PlanejadorConsultas(store, indiceCategoria, indiceFavoritos,
+                indiceDataNascimento, indiceTrigramas, estatisticas, colunar);
+
+        // Restaura antes de registrar a persistência, para não regravar o que veio dela
+        boolean restaurado = persistencia.map(this::restaurar).orElse(false);
+        persistencia.ifPresent(store::registrarOuvinte);
+        if (restaurado) {
+            logger.info("ContatoService inicializado com {} contatos persistidos", store.tamanho());
+        } else {
+            inserirMocks();
+        }
+        // Depois da carga inicial: quem sincroniza nesta execução já partiu dela
+        store.registrarOuvinte(registroAlteracoes);
+    }
+
+    private void inserirMocks() {
         // Dados mock iniciais com novos campos
-        LISTA_CONTATOS.add(new Contato(1L, "João Silva", "(11) 99999-9999",
+        store.inserir(new Contato(1L, "João Silva", "(11) 99999-9999",
                 "joao@email.com", "Rua A, 123", LocalDate.of(1990, 5, 15), Categoria.FAMILIA, true));
-        LISTA_CONTATOS.add(new Contato(2L, "Maria Santos", "(11) 88888-8888",
+        store.inserir(new Contato(2L, "Maria Santos", "(11) 88888-8888",
                 "maria@email.com", "Av B, 456", LocalDate.of(1985, 8, 20), Categoria.TRABALHO, false));
-        LISTA_CONTATOS.add(new Contato(3L, "Pedro Costa", "(11) 77777-7777",
+        store.inserir(new Contato(3L, "Pedro Costa", "(11) 77777-7777",
                 "pedro@email.com", "Rua C, 789", LocalDate.of(1995, 3, 10), Categoria.AMIGOS, true));
-        LISTA_CONTATOS.add(new Contato(4L, "Ana Oliveira", "(11) 66666-6666",
+        store.inserir(new Contato(4L, "Ana Oliveira", "(11) 66666-6666",
                 "ana@email.com", "Av D, 321", LocalDate.of(1988, 12, 25), Categoria.FACULDADE, false));
-        LISTA_CONTATOS.add(new Contato(5L, "Carlos Lima", "(11) 55555-5555",
+        store.inserir(new Contato(5L, "Carlos Lima", "(11) 55555-5555",
                 "carlos@email.com", "Rua E, 654", LocalDate.of(1992, 7, 8), Categoria.ACADEMIA, true));
 
-        logger.info("ContatoService inicializado com {} contatos mock", LISTA_CONTATOS.size());
+        logger.info("ContatoService inicializado com {} contatos mock", store.tamanho());
+    }
+
+    private boolean restaurar(PersistenciaContatos persistencia) {
+        List<Contato> contatos = persistencia.carregar();
+        store.inserirTodos(contatos);
+        return !contatos.isEmpty();
     }
 
     /**
@@ -41,80 +139,390 @@ public class ContatoService {
      */
     public List<Contato> buscarTodos() {
         logger.debug("Buscando todos os contatos");
-        List<Contato> contatos = new ArrayList<>(LISTA_CONTATOS);
+        List<Contato> contatos = store.todos();
         logger.info("Retornando {} contatos", contatos.size());
         return contatos;
     }
 
     /**
-     * Busca contatos com filtros usando Streams API
+     * Página de todos os contatos, a partir do cursor, em ordem de ID ou na
+     * ordenação pedida
+     */
+    public Pagina<Contato> buscarTodos(String ordenar, String cursor, Integer limite) {
+        logger.debug("Buscando página de contatos após o cursor {}", cursor);
+        Pagina<Contato> pagina = paginar(store::streamApos, contato -> true, ordenar, cursor, limite);
+        logger.info("Retornando página com {} contatos", pagina.itens().size());
+        return pagina;
+    }
+
+    /**
+     * Busca contatos com filtros, executando o plano escolhido pelo
+     * planejador de consultas
      */
     public List<Contato> buscarComFiltros(ContatoFiltro filtro) {
         logger.debug("Buscando contatos com filtros: {}", filtro);
 
-        List<Contato> contatos = LISTA_CONTATOS.stream()
-                .filter(criarPredicadoFiltro(filtro))
-                .collect(Collectors.toList());
+        PlanoConsulta plano = planejador.planejar(filtro);
+        logger.debug("Plano escolhido: {}", plano.explicar());
+
+        List<Contato> contatos = plano.executar().collect(Collectors.toList());
 
         logger.info("Filtro aplicado: {} contatos encontrados", contatos.size());
         return contatos;
     }
 
+    /**
+     * Página dos contatos aceitos pelo filtro; o caminho de acesso do plano
+     * já começa depois do cursor. Com ordenação, o índice ordenado é
+     * percorrido e os critérios do plano aplicados a cada contato.
+     */
+    public Pagina<Contato> buscarComFiltros(ContatoFiltro filtro, String ordenar, String cursor, Integer limite) {
+        logger.debug("Buscando página com filtros: {}", filtro);
+        Pagina<Contato> pagina = emCache("filtros", CriterioFiltro.de(filtro), ordenar, cursor, limite, () -> {
+            PlanoConsulta plano = planejador.planejar(filtro);
+            return paginar(plano::executar, plano::aceita, ordenar, cursor, limite);
+        });
+        logger.info("Filtro aplicado: página com {} contatos", pagina.itens().size());
+        return pagina;
+    }
+
+    /**
+     * Explica o plano que seria usado para o filtro, sem executá-lo
+     */
+    public PlanoConsulta.Explicacao explicarFiltros(ContatoFiltro filtro) {
+        logger.debug("Explicando plano para filtros: {}", filtro);
+        return planejador.planejar(filtro).explicar();
+    }
+
+    /**
+     * Contatos aceitos pelo filtro em ordem de ID, como stream preguiçoso
+     * sobre o snapshot atual. Para a exportação, que consome o stream aos
+     * poucos sem montar a lista.
+     */
+    public Stream<Contato> exportar(ContatoFiltro filtro) {
+        logger.debug("Exportando contatos com filtros: {}", filtro);
+        return planejador.planejar(filtro).executar();
+    }
+
     /**
      * Busca contatos por texto (nome, telefone, email)
      */
     public List<Contato> buscarPorTexto(String texto) {
         logger.debug("Buscando contatos por texto: '{}'", texto);
 
-        String textoLower = texto.toLowerCase();
-        List<Contato> contatos = LISTA_CONTATOS.stream()
-                .filter(contato
-                        -> contato.getNome().toLowerCase().contains(textoLower)
-                || (contato.getTelefone() != null && contato.getTelefone().contains(texto))
-                || (contato.getEmail() != null && contato.getEmail().toLowerCase().contains(textoLower))
-                || (contato.getEndereco() != null && contato.getEndereco().toLowerCase().contains(textoLower)))
-                .collect(Collectors.toList());
+        List<Contato> contatos = porTexto(texto, Pagina.INICIO).collect(Collectors.toList());
 
         logger.info("Busca por texto '{}': {} contatos encontrados", texto, contatos.size());
         return contatos;
     }
 
+    /**
+     * Página da busca por texto, a partir do cursor
+     */
+    public Pagina<Contato> buscarPorTexto(String texto, String ordenar, String cursor, Integer limite) {
+        logger.debug("Buscando página por texto: '{}'", texto);
+        String textoBusca = NormalizadorTexto.normalizar(texto);
+        String digitos = NormalizadorTexto.digitosDeTelefone(texto);
+        Pagina<Contato> pagina = emCache("busca", new CriterioTexto(textoBusca, digitos, null),
+                ordenar, cursor, limite, () -> paginar(aposId -> porTexto(texto, aposId),
+                        contato -> correspondeAoTexto(contato, textoBusca, digitos), ordenar, cursor, limite));
+        logger.info("Busca por texto '{}': página com {} contatos", texto, pagina.itens().size());
+        return pagina;
+    }
+
+    private Stream<Contato> porTexto(String texto, long aposId) {
+        // Normaliza a busca uma vez; os contatos já guardam as formas normalizadas
+        String textoBusca = NormalizadorTexto.normalizar(texto);
+        String digitos = NormalizadorTexto.digitosDeTelefone(texto);
+
+        // O índice de trigramas devolve só os candidatos, que são verificados
+        // com o predicado original; textos curtos caem na varredura completa
+        Stream<Contato> candidatos = indiceTrigramas.candidatos(textoBusca, digitos)
+                .map(ids -> store.buscarTodos(ids.tailSet(aposId, false)))
+                .orElseGet(() -> store.streamApos(aposId));
+
+        return candidatos.filter(contato -> correspondeAoTexto(contato, textoBusca, digitos));
+    }
+
+    // Texto contra nome, email e endereço sem acentos nem maiúsculas; o
+    // telefone só é comparado, por dígitos, quando a busca parece um telefone
+    private static boolean correspondeAoTexto(Contato contato, String textoBusca, String digitos) {
+        return contato.getNomeBusca().contains(textoBusca)
+                || (digitos != null && contato.getTelefone() != null && contato.getTelefoneDigitos().contains(digitos))
+                || (contato.getEmail() != null && contato.getEmailBusca().contains(textoBusca))
+                || (contato.getEndereco() != null && contato.getEnderecoBusca().contains(textoBusca));
+    }
+
+    /**
+     * Busca aproximada por nome: cada palavra buscada pode estar a até
+     * {@code distanciaMaxima} edições (Levenshtein) de uma palavra do nome,
+     * sem diferenciar maiúsculas nem acentos. Os contatos vêm do mais
+     * próximo para o mais distante, pela soma das distâncias, e por ID no
+     * empate.
+     *
+     * @throws IllegalArgumentException se a distância estiver fora de 0 a
+     *                                  {@link #DISTANCIA_MAXIMA}
+     */
+    public List<Contato> buscarAproximado(String texto, int distanciaMaxima) {
+        logger.debug("Busca aproximada: '{}' (distância até {})", texto, distanciaMaxima);
+        List<Contato> contatos = aproximados(texto, distanciaMaxima).stream()
+                .map(Aproximado::contato)
+                .collect(Collectors.toList());
+        logger.info("Busca aproximada '{}': {} contatos encontrados", texto, contatos.size());
+        return contatos;
+    }
+
+    /**
+     * Página da busca aproximada; o cursor guarda a distância e o ID do
+     * último contato entregue
+     */
+    public Pagina<Contato> buscarAproximado(String texto, int distanciaMaxima, String cursor, Integer limite) {
+        logger.debug("Página da busca aproximada: '{}' (distância até {})", texto, distanciaMaxima);
+        Pagina<Contato> pagina = emCache("aproximada",
+                new CriterioTexto(NormalizadorTexto.normalizar(texto), null, distanciaMaxima), null, cursor, limite,
+                () -> {
+                    int tamanho = Pagina.limite(limite);
+                    PosicaoAproximada apos = cursor != null && !cursor.isEmpty() ? PosicaoAproximada.de(cursor) : null;
+                    Pagina<Aproximado> aproximados = Pagina.de(aproximados(texto, distanciaMaxima).stream()
+                            .filter(aproximado -> apos == null || apos.antesDe(aproximado)),
+                            tamanho, PosicaoAproximada::cursor);
+                    return new Pagina<>(aproximados.itens().stream().map(Aproximado::contato)
+                            .collect(Collectors.toList()), aproximados.proximo());
+                });
+        logger.info("Busca aproximada '{}': página com {} contatos", texto, pagina.itens().size());
+        return pagina;
+    }
+
+    // A árvore devolve os candidatos e a distância é recalculada sobre o
+    // contato vigente, que pode ter mudado depois da leitura do índice
+    private List<Aproximado> aproximados(String texto, int distanciaMaxima) {
+        if (distanciaMaxima < 0 || distanciaMaxima > DISTANCIA_MAXIMA) {
+            throw new IllegalArgumentException("Distância deve estar entre 0 e " + DISTANCIA_MAXIMA);
+        }
+        List<String> palavras = IndiceBkTree.palavras(NormalizadorTexto.normalizar(texto));
+        if (palavras.isEmpty()) {
+            return List.of();
+        }
+        return store.buscarTodos(indiceBkTree.candidatos(palavras, distanciaMaxima))
+                .map(contato -> new Aproximado(contato,
+                        IndiceBkTree.distancia(contato.getNomeBusca(), palavras, distanciaMaxima)))
+                .filter(aproximado -> aproximado.distancia() >= 0)
+                .sorted(ORDEM_APROXIMADOS)
+                .collect(Collectors.toList());
+    }
+
+    private record Aproximado(Contato contato, int distancia) {
+    }
+
+    // Posição na ordem da busca aproximada (distância e ID), guardada no cursor
+    private record PosicaoAproximada(int distancia, long id) {
+
+        static String cursor(Aproximado aproximado) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    ByteBuffer.allocate(Integer.BYTES + Long.BYTES)
+                            .putInt(aproximado.distancia()).putLong(aproximado.contato().getId()).array());
+        }
+
+        static PosicaoAproximada de(String cursor) {
+            byte[] bytes;
+            try {
+                bytes = Base64.getUrlDecoder().decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+            if (bytes.length != Integer.BYTES + Long.BYTES) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new PosicaoAproximada(buffer.getInt(), buffer.getLong());
+        }
+
+        boolean antesDe(Aproximado aproximado) {
+            return aproximado.distancia() > distancia
+                    || (aproximado.distancia() == distancia && aproximado.contato().getId() > id);
+        }
+    }
+
+    /**
+     * Sugestões para o que está sendo digitado: até {@code limite} contatos
+     * (padrão e máximo {@link IndiceAutocompletar#TOP}) com alguma palavra do
+     * nome começando pelo prefixo, sem diferenciar maiúsculas nem acentos.
+     * Favoritos vêm primeiro, depois os atualizados mais recentemente.
+     *
+     * Com várias palavras, a última é o prefixo procurado na trie e as
+     * anteriores filtram as sugestões. Se o filtro esvazia um top cheio, os
+     * contatos são varridos, já que a trie só guarda o top de cada prefixo.
+     *
+     * @throws IllegalArgumentException se o limite estiver fora de 1 a
+     *                                  {@link IndiceAutocompletar#TOP}
+     */
+    public List<Contato> autocompletar(String prefixo, Integer limite) {
+        // Chamado a cada tecla, então fica no debug
+        logger.debug("Autocompletar: '{}'", prefixo);
+        int tamanho = limite != null ? limite : IndiceAutocompletar.TOP;
+        if (tamanho < 1 || tamanho > IndiceAutocompletar.TOP) {
+            throw new IllegalArgumentException("Limite deve estar entre 1 e " + IndiceAutocompletar.TOP);
+        }
+        List<String> prefixos = IndiceBkTree.palavras(NormalizadorTexto.normalizar(prefixo));
+        if (prefixos.isEmpty()) {
+            return List.of();
+        }
+        List<Contato> top = indiceAutocompletar.sugerir(prefixos.get(prefixos.size() - 1), IndiceAutocompletar.TOP);
+        if (prefixos.size() == 1) {
+            return top.subList(0, Math.min(tamanho, top.size()));
+        }
+        List<Contato> sugestoes = top.stream()
+                .filter(contato -> IndiceAutocompletar.comecaCom(contato.getNomeBusca(), prefixos))
+                .limit(tamanho)
+                .collect(Collectors.toList());
+        if (sugestoes.size() == tamanho || top.size() < IndiceAutocompletar.TOP) {
+            return sugestoes;
+        }
+        return store.stream()
+                .filter(contato -> IndiceAutocompletar.comecaCom(contato.getNomeBusca(), prefixos))
+                .sorted(IndiceAutocompletar.ORDEM_CONTATOS)
+                .limit(tamanho)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Acertos, faltas e despejos do cache de consultas, e o tamanho atual
+     */
+    public Map<String, Object> obterEstatisticasCache() {
+        return cache.estatisticas();
+    }
+
+    /**
+     * Alterações de contatos posteriores à marca de uma sincronização
+     * anterior, compactadas por ID, até {@code limite} por vez; ver
+     * {@link RegistroAlteracoes}
+     *
+     * @throws IllegalArgumentException se o limite for menor que 1
+     */
+    public RegistroAlteracoes.Sincronizacao sincronizar(long marca, Integer limite) {
+        RegistroAlteracoes.Sincronizacao sincronizacao = registroAlteracoes.desde(marca, Pagina.limite(limite));
+        if (sincronizacao.ressincronizar()) {
+            logger.info("Sincronização a partir de {} fora do registro, pedindo recarga completa", marca);
+        } else {
+            logger.info("Sincronização a partir de {}: {} alterações", marca, sincronizacao.alteracoes().size());
+        }
+        return sincronizacao;
+    }
+
+    /**
+     * Versão dos contatos quando nenhuma escrita está pela metade, ou -1;
+     * ver {@link ContatoStore#versaoEstavel()}
+     */
+    public long versaoEstavel() {
+        return store.versaoEstavel();
+    }
+
     /**
      * Busca contatos favoritos
      */
     public List<Contato> buscarFavoritos() {
         logger.debug("Buscando contatos favoritos");
-        List<Contato> favoritos = LISTA_CONTATOS.stream()
-                .filter(Contato::isFavorito)
-                .collect(Collectors.toList());
+        List<Contato> favoritos = favoritos(Pagina.INICIO).collect(Collectors.toList());
 
         logger.info("Encontrados {} contatos favoritos", favoritos.size());
         return favoritos;
     }
 
+    /**
+     * Página dos contatos favoritos, a partir do cursor
+     */
+    public Pagina<Contato> buscarFavoritos(String ordenar, String cursor, Integer limite) {
+        logger.debug("Buscando página de favoritos");
+        Pagina<Contato> pagina = emCache("favoritos", null, ordenar, cursor, limite,
+                () -> paginar(this::favoritos, Contato::isFavorito, ordenar, cursor, limite));
+        logger.info("Página com {} contatos favoritos", pagina.itens().size());
+        return pagina;
+    }
+
+    private Stream<Contato> favoritos(long aposId) {
+        return store.buscarTodos(indiceFavoritos.ids().tailSet(aposId, false))
+                .filter(Contato::isFavorito);
+    }
+
     /**
      * Busca contatos por categoria
      */
     public List<Contato> buscarPorCategoria(Categoria categoria) {
         logger.debug("Buscando contatos por categoria: {}", categoria);
 
-        List<Contato> contatos = LISTA_CONTATOS.stream()
-                .filter(contato -> contato.getCategoria() == categoria)
-                .collect(Collectors.toList());
+        List<Contato> contatos = porCategoria(categoria, Pagina.INICIO).collect(Collectors.toList());
 
         logger.info("Categoria '{}': {} contatos encontrados", categoria.getDescricao(), contatos.size());
         return contatos;
     }
 
+    /**
+     * Página dos contatos da categoria, a partir do cursor
+     */
+    public Pagina<Contato> buscarPorCategoria(Categoria categoria, String ordenar, String cursor, Integer limite) {
+        logger.debug("Buscando página da categoria: {}", categoria);
+        Pagina<Contato> pagina = emCache("categoria", categoria, ordenar, cursor, limite,
+                () -> paginar(aposId -> porCategoria(categoria, aposId),
+                        contato -> contato.getCategoria() == categoria, ordenar, cursor, limite));
+        logger.info("Categoria '{}': página com {} contatos", categoria.getDescricao(), pagina.itens().size());
+        return pagina;
+    }
+
+    private Stream<Contato> porCategoria(Categoria categoria, long aposId) {
+        return store.buscarTodos(indiceCategoria.ids(categoria).tailSet(aposId, false))
+                .filter(contato -> contato.getCategoria() == categoria);
+    }
+
+    // Em ordem de ID, a página vem do caminho de acesso da listagem a partir
+    // do cursor; com ordenação, do índice ordenado filtrado pelo critério dela
+    // Ordenação e limite entram na chave já interpretados, então parâmetros
+    // equivalentes ("nome" e "nome,asc", sem limite e 100) dividem a entrada
+    private Pagina<Contato> emCache(String consulta, Object criterio, String ordenar, String cursor,
+            Integer limite, Supplier<Pagina<Contato>> busca) {
+        CacheConsultas.Chave chave = new CacheConsultas.Chave(consulta, criterio, Ordenacao.de(ordenar),
+                cursor != null && !cursor.isEmpty() ? cursor : null, Pagina.limite(limite));
+        return cache.obter(chave, busca);
+    }
+
+    // Filtro na forma usada pelo planejador: campos vazios descartados, nome e
+    // email sem acentos nem maiúsculas e telefone pelos dígitos quando se
+    // parece com um telefone
+    private record CriterioFiltro(Long id, String nome, String telefone, String email, Categoria categoria,
+            Boolean favorito, LocalDate dataNascimentoInicio, LocalDate dataNascimentoFim) {
+
+        static CriterioFiltro de(ContatoFiltro filtro) {
+            String telefone = filtro.getTelefone().filter(PlanejadorConsultas::preenchido).orElse(null);
+            String digitos = telefone != null ? NormalizadorTexto.digitosDeTelefone(telefone) : null;
+            return new CriterioFiltro(filtro.getId().orElse(null),
+                    filtro.getNome().filter(PlanejadorConsultas::preenchido).map(NormalizadorTexto::normalizar).orElse(null),
+                    digitos != null ? digitos : telefone,
+                    filtro.getEmail().filter(PlanejadorConsultas::preenchido).map(NormalizadorTexto::normalizar).orElse(null),
+                    filtro.getCategoria().orElse(null), filtro.getFavorito().orElse(null),
+                    filtro.getDataNascimentoInicio().orElse(null), filtro.getDataNascimentoFim().orElse(null));
+        }
+    }
+
+    private record CriterioTexto(String textoBusca, String digitos, Integer distancia) {
+    }
+
+    private Pagina<Contato> paginar(LongFunction<Stream<Contato>> porId, Predicate<Contato> criterio,
+            String ordenar, String cursor, Integer limite) {
+        int tamanho = Pagina.limite(limite);
+        Ordenacao ordenacao = Ordenacao.de(ordenar);
+        if (ordenacao == null) {
+            return Pagina.de(porId.apply(Pagina.aposId(cursor)), tamanho);
+        }
+        return Pagina.de(indiceOrdenacao.contatos(ordenacao, cursor).filter(criterio), tamanho,
+                contato -> indiceOrdenacao.cursor(ordenacao, contato));
+    }
+
     /**
      * Busca contato por ID usando Optional
      */
     public Optional<Contato> buscarPorId(Long id) {
         logger.debug("Buscando contato por ID: {}", id);
 
-        Optional<Contato> contato = LISTA_CONTATOS.stream()
-                .filter(c -> Objects.equals(c.getId(), id))
-                .findFirst();
+        Optional<Contato> contato = store.buscar(id);
 
         if (contato.isPresent()) {
             logger.debug("Contato encontrado: {}", contato.get().getNome());
@@ -126,54 +534,78 @@ public class ContatoService {
     }
 
     /**
-     * Salva um novo contato
+     * Salva um novo contato. ID e versão informados são ignorados: a inclusão
+     * sempre gera um ID novo, sem substituir um contato existente nem passar
+     * pela verificação de versão da atualização.
      */
     public Contato salvar(Contato contato) {
         logger.info("Salvando novo contato: {}", contato.getNome());
 
-        // Gerar ID para novo contato
-        if (contato.getId() == null) {
-            Long nextId = LISTA_CONTATOS.stream()
-                    .mapToLong(Contato::getId)
-                    .max()
-                    .orElse(0L) + 1L;
-            contato.setId(nextId);
-            logger.debug("ID gerado para novo contato: {}", nextId);
-        }
-
         contato.setDataCriacao(LocalDateTime.now());
         contato.setDataAtualizacao(LocalDateTime.now());
 
-        LISTA_CONTATOS.add(contato);
+        // Gerar ID para novo contato pela sequência do store
+        contato.setId(null);
+        contato.setVersao(0);
+        store.inserir(contato);
+        logger.debug("ID gerado para novo contato: {}", contato.getId());
         logger.info("Contato salvo com sucesso. ID: {}, Nome: {}", contato.getId(), contato.getNome());
 
         return contato;
     }
 
+    /**
+     * Insere um lote de contatos novos já validados, publicado como uma única
+     * versão do store. Usado pela importação em massa, sem log por contato.
+     */
+    public List<Contato> importar(List<Contato> contatos) {
+        if (contatos.isEmpty()) {
+            return contatos;
+        }
+        LocalDateTime agora = LocalDateTime.now();
+        for (Contato contato : contatos) {
+            contato.setDataCriacao(agora);
+            contato.setDataAtualizacao(agora);
+        }
+        List<Contato> importados = store.inserirTodos(contatos);
+        logger.debug("Lote de {} contatos importado", importados.size());
+        return importados;
+    }
+
+    /**
+     * Aplica um lote de escritas já validadas em uma única versão do store;
+     * ver {@link ContatoStore#aplicarLote(List, boolean)}. Usado pelas
+     * operações em lote, sem log por contato.
+     */
+    public List<ContatoStore.Efeito> aplicarLote(List<ContatoStore.Escrita> escritas, boolean atomico) {
+        if (escritas.isEmpty()) {
+            return List.of();
+        }
+        List<ContatoStore.Efeito> efeitos = store.aplicarLote(escritas, atomico);
+        logger.debug("Lote de {} escritas aplicado", efeitos.size());
+        return efeitos;
+    }
+
     /**
      * Atualiza um contato existente
      */
     public Optional<Contato> atualizar(Long id, Contato contatoAtualizado) {
         logger.info("Atualizando contato com ID: {}", id);
 
-        Optional<Contato> contatoExistente = buscarPorId(id);
-
-        return contatoExistente.map(contato -> {
-            logger.debug("Contato encontrado para atualização: {}", contato.getNome());
+        // Uma única leitura do relógio; o registro novo substitui o anterior inteiro
+        LocalDateTime agora = LocalDateTime.now();
+        Optional<Contato> resultado = store.atualizar(id, contatoAtualizado.getVersao(), registro -> {
+            logger.debug("Contato encontrado para atualização: {}", registro.nome());
+            return registro.comDados(contatoAtualizado, agora);
+        });
 
-            // Atualizar campos
-            contato.setNome(contatoAtualizado.getNome());
-            contato.setTelefone(contatoAtualizado.getTelefone());
-            contato.setEmail(contatoAtualizado.getEmail());
-            contato.setEndereco(contatoAtualizado.getEndereco());
-            contato.setDataNascimento(contatoAtualizado.getDataNascimento());
-            contato.setCategoria(contatoAtualizado.getCategoria());
-            contato.setFavorito(contatoAtualizado.isFavorito());
-            contato.setDataAtualizacao(LocalDateTime.now());
+        if (resultado.isPresent()) {
+            logger.info("Contato atualizado com sucesso. ID: {}, Nome: {}", id, resultado.get().getNome());
+        } else {
+            logger.warn("Contato com ID {} não encontrado", id);
+        }
 
-            logger.info("Contato atualizado com sucesso. ID: {}, Nome: {}", id, contato.getNome());
-            return contato;
-        });
+        return resultado;
     }
 
     /**
@@ -182,19 +614,11 @@ public class ContatoService {
     public boolean remover(Long id) {
         logger.info("Removendo contato com ID: {}", id);
 
-        Optional<Contato> contatoParaRemover = buscarPorId(id);
+        Optional<Contato> contatoRemovido = store.remover(id);
 
-        if (contatoParaRemover.isPresent()) {
-            Contato contato = contatoParaRemover.get();
-            boolean removido = LISTA_CONTATOS.remove(contato);
-
-            if (removido) {
-                logger.info("Contato removido com sucesso. ID: {}, Nome: {}", id, contato.getNome());
-            } else {
-                logger.error("Erro ao remover contato. ID: {}", id);
-            }
-
-            return removido;
+        if (contatoRemovido.isPresent()) {
+            logger.info("Contato removido com sucesso. ID: {}, Nome: {}", id, contatoRemovido.get().getNome());
+            return true;
         } else {
             logger.warn("Tentativa de remover contato inexistente. ID: {}", id);
             return false;
@@ -207,116 +631,33 @@ public class ContatoService {
     public Optional<Contato> alternarFavorito(Long id) {
         logger.info("Alternando status de favorito para contato ID: {}", id);
 
-        return buscarPorId(id).map(contato -> {
-            boolean eraFavorito = contato.isFavorito();
-            contato.setFavorito(!eraFavorito);
-            contato.setDataAtualizacao(LocalDateTime.now());
+        LocalDateTime agora = LocalDateTime.now();
+        Optional<Contato> contatoAlterado = store.atualizar(id, 0,
+                registro -> registro.comFavorito(!registro.favorito(), agora));
 
+        contatoAlterado.ifPresentOrElse(contato -> {
             if (contato.isFavorito()) {
                 logger.info("Contato marcado como favorito. ID: {}, Nome: {}", id, contato.getNome());
             } else {
                 logger.info("Contato removido dos favoritos. ID: {}, Nome: {}", id, contato.getNome());
             }
+        }, () -> logger.warn("Contato com ID {} não encontrado", id));
 
-            return contato;
-        });
+        return contatoAlterado;
     }
 
     /**
-     * Obtém estatísticas dos contatos
+     * Obtém estatísticas dos contatos, mantidas incrementalmente a cada escrita
      */
     public Map<String, Object> obterEstatisticas() {
-        logger.debug("Calculando estatísticas dos contatos");
+        logger.debug("Obtendo estatísticas dos contatos");
 
-        Map<String, Object> estatisticas = new HashMap<>();
+        Map<String, Object> resultado = estatisticas.obter();
 
-        // Estatísticas básicas
-        long total = LISTA_CONTATOS.size();
-        long favoritos = LISTA_CONTATOS.stream().filter(Contato::isFavorito).count();
+        logger.debug("Estatísticas - Total: {}, Favoritos: {}, Média de idade: {}",
+                resultado.get("total"), resultado.get("favoritos"), resultado.get("mediaIdade"));
 
-        // Média de idade
-        double mediaIdade = LISTA_CONTATOS.stream()
-                .filter(c -> c.getDataNascimento() != null)
-                .mapToInt(Contato::getIdade)
-                .average()
-                .orElse(0.0);
-
-        // Contagem por categoria
-        Map<Categoria, Long> contagemPorCategoria = LISTA_CONTATOS.stream()
-                .collect(Collectors.groupingBy(Contato::getCategoria, Collectors.counting()));
-
-        estatisticas.put("total", total);
-        estatisticas.put("favoritos", favoritos);
-        estatisticas.put("mediaIdade", Math.round(mediaIdade * 10.0) / 10.0);
-        estatisticas.put("contagemPorCategoria", contagemPorCategoria);
-
-        logger.info("Estatísticas calculadas - Total: {}, Favoritos: {}, Média de idade: {}",
-                total, favoritos, estatisticas.get("mediaIdade"));
-
-        return estatisticas;
-    }
-
-    /**
-     * Cria predicado dinâmico baseado nos filtros
-     */
-    private Predicate<Contato> criarPredicadoFiltro(ContatoFiltro filtro) {
-        return contato -> {
-            // Filtro por nome
-            if (filtro.getNome().isPresent() && !filtro.getNome().get().trim().isEmpty()) {
-                String nomeBusca = filtro.getNome().get().toLowerCase();
-                if (!contato.getNome().toLowerCase().contains(nomeBusca)) {
-                    return false;
-                }
-            }
-
-            // Filtro por telefone
-            if (filtro.getTelefone().isPresent() && !filtro.getTelefone().get().trim().isEmpty()) {
-                String telefoneBusca = filtro.getTelefone().get();
-                if (!contato.getTelefone().contains(telefoneBusca)) {
-                    return false;
-                }
-            }
-
-            // Filtro por email
-            if (filtro.getEmail().isPresent() && !filtro.getEmail().get().trim().isEmpty()) {
-                String emailBusca = filtro.getEmail().get().toLowerCase();
-                if (contato.getEmail() == null || !contato.getEmail().toLowerCase().contains(emailBusca)) {
-                    return false;
-                }
-            }
-
-            // Filtro por categoria
-            if (filtro.getCategoria().isPresent()) {
-                if (contato.getCategoria() != filtro.getCategoria().get()) {
-                    return false;
-                }
-            }
-
-            // Filtro por favorito
-            if (filtro.getFavorito().isPresent()) {
-                if (contato.isFavorito() != filtro.getFavorito().get()) {
-                    return false;
-                }
-            }
-
-            // Filtro por data de nascimento (início)
-            if (filtro.getDataNascimentoInicio().isPresent()) {
-                if (contato.getDataNascimento() == null
-                        || contato.getDataNascimento().isBefore(filtro.getDataNascimentoInicio().get())) {
-                    return false;
-                }
-            }
-
-            // Filtro por data de nascimento (fim)
-            if (filtro.getDataNascimentoFim().isPresent()) {
-                if (contato.getDataNascimento() == null
-                        || contato.getDataNascimento().isAfter(filtro.getDataNascimentoFim().get())) {
-                    return false;
-                }
-            }
-
-            return true;
-        };
+        return resultado;
     }
 
     /**
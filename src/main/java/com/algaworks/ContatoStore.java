@@ -0,0 +1,580 @@
+package com.algaworks;
+
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento em memória dos contatos no estilo MVCC. O estado é um
+ * {@link Snapshot} imutável (versão + {@link MapaPersistente} por ID)
+ * publicado em uma referência atômica: leitores pegam o snapshot atual sem
+ * lock e nunca enxergam um contato pela metade, e escritores publicam uma
+ * nova versão por CAS, copiando apenas o caminho da trie até o ID alterado.
+ *
+ * Contatos publicados não são alterados: cada alteração produz um
+ * {@link ContatoRegistro} novo, que substitui o anterior com a versão do
+ * contato incrementada. Escritas no mesmo ID são serializadas por
+ * locks particionados, e os índices secundários registrados são atualizados
+ * dentro dessa mesma seção, garantindo que cada índice reflita o estado do
+ * contato. Em seguida os {@link OuvinteContatos} são notificados da escrita.
+ */
+@Component
+public class ContatoStore {
+
+    // Partições de lock das escritas; o ArmazenamentoColunar segmenta as linhas do mesmo jeito
+    static final int PARTICOES = 64;
+
+    private final AtomicReference<Snapshot> atual = new AtomicReference<>(new Snapshot(0, MapaPersistente.vazio()));
+
+    private final AtomicLong sequencia = new AtomicLong();
+
+    // Escritas publicadas que já atualizaram os índices; igual à versão
+    // quando não há escrita em andamento
+    private final AtomicLong escritasConcluidas = new AtomicLong();
+
+    private final ReentrantLock[] locks = new ReentrantLock[PARTICOES];
+
+    private final List<IndiceContatos> indices = new CopyOnWriteArrayList<>();
+
+    private final List<OuvinteContatos> ouvintes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Versão imutável do conjunto de contatos. A lista ordenada por ID é
+     * montada uma única vez por versão e compartilhada por todas as leituras.
+     */
+    public static final class Snapshot {
+
+        private final long versao;
+        private final MapaPersistente<Contato> contatos;
+        private volatile List<Contato> lista;
+
+        private Snapshot(long versao, MapaPersistente<Contato> contatos) {
+            this.versao = versao;
+            this.contatos = contatos;
+        }
+
+        public long versao() {
+            return versao;
+        }
+
+        public Optional<Contato> buscar(Long id) {
+            return id == null ? Optional.empty() : Optional.ofNullable(contatos.get(id));
+        }
+
+        public int tamanho() {
+            return contatos.tamanho();
+        }
+
+        /**
+         * Contatos desta versão em ordem de ID, sem cópia por chamada
+         */
+        public List<Contato> lista() {
+            List<Contato> resultado = lista;
+            if (resultado == null) {
+                resultado = Collections.unmodifiableList(contatos.stream().collect(Collectors.toList()));
+                lista = resultado;
+            }
+            return resultado;
+        }
+
+        public Stream<Contato> stream() {
+            List<Contato> resultado = lista;
+            return resultado != null ? resultado.stream() : contatos.stream();
+        }
+
+        /**
+         * Contatos com ID maior que o informado, em ordem de ID
+         */
+        public Stream<Contato> streamApos(long aposId) {
+            return aposId == Long.MAX_VALUE ? Stream.empty() : contatos.stream(aposId + 1);
+        }
+
+        private Contato get(long id) {
+            return contatos.get(id);
+        }
+    }
+
+    public ContatoStore() {
+        for (int i = 0; i < PARTICOES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Registra um índice secundário, indexando os contatos já armazenados
+     */
+    public void registrarIndice(IndiceContatos indice) {
+        indices.add(indice);
+        atual.get().stream().forEach(contato -> {
+            ReentrantLock lock = lock(contato.getId());
+            lock.lock();
+            try {
+                Contato vigente = atual.get().get(contato.getId());
+                if (vigente != null) {
+                    indice.indexar(vigente);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Registra um ouvinte notificado a cada escrita publicada daqui em diante
+     */
+    public void registrarOuvinte(OuvinteContatos ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    /**
+     * Snapshot atual; todas as leituras feitas sobre ele são consistentes
+     * entre si
+     */
+    public Snapshot snapshot() {
+        return atual.get();
+    }
+
+    /**
+     * Versão atual, incrementada a cada escrita publicada
+     */
+    public long versao() {
+        return atual.get().versao();
+    }
+
+    /**
+     * Versão atual se todas as escritas publicadas até ela já atualizaram os
+     * índices, ou -1 durante uma escrita. Um resultado calculado a partir de
+     * uma versão estável, sem que {@link #versao()} mude até o fim do cálculo,
+     * corresponde exatamente a essa versão, inclusive nas partes lidas dos
+     * índices.
+     */
+    public long versaoEstavel() {
+        // As concluídas são lidas antes: se ainda igualam a versão, nenhuma
+        // escrita publicada até a leitura da versão está pela metade
+        long concluidas = escritasConcluidas.get();
+        long versao = versao();
+        return versao == concluidas ? versao : -1;
+    }
+
+    /**
+     * Busca um contato pelo ID, sem lock
+     */
+    public Optional<Contato> buscar(Long id) {
+        return atual.get().buscar(id);
+    }
+
+    /**
+     * Retorna todos os contatos ordenados por ID. A lista é imutável e
+     * compartilhada entre as leituras da mesma versão.
+     */
+    public List<Contato> todos() {
+        return atual.get().lista();
+    }
+
+    /**
+     * Resolve uma coleção de IDs vinda de um índice, ignorando IDs removidos
+     * entre a leitura do índice e a do snapshot
+     */
+    public Stream<Contato> buscarTodos(Collection<Long> ids) {
+        Snapshot snapshot = atual.get();
+        return ids.stream().map(snapshot::get).filter(Objects::nonNull);
+    }
+
+    /**
+     * Materializa os contatos de um array de IDs, como o devolvido pelas
+     * varreduras do armazenamento colunar
+     */
+    public Stream<Contato> buscarTodos(long[] ids) {
+        Snapshot snapshot = atual.get();
+        return Arrays.stream(ids).mapToObj(snapshot::get).filter(Objects::nonNull);
+    }
+
+    /**
+     * Stream sobre o snapshot atual, em ordem de ID e sem cópia
+     */
+    public Stream<Contato> stream() {
+        return atual.get().stream();
+    }
+
+    /**
+     * Stream sobre o snapshot atual a partir do primeiro ID maior que o
+     * informado, sem percorrer os anteriores
+     */
+    public Stream<Contato> streamApos(long aposId) {
+        return atual.get().streamApos(aposId);
+    }
+
+    /**
+     * Insere um contato. Quando o contato não tem ID, um novo é gerado pela
+     * sequência; quando já tem, a sequência é avançada para nunca reutilizá-lo.
+     * A instância passa a pertencer ao store e não deve mais ser alterada.
+     */
+    public Contato inserir(Contato contato) {
+        if (contato.getId() == null) {
+            contato.setId(sequencia.incrementAndGet());
+        } else {
+            sequencia.accumulateAndGet(contato.getId(), Math::max);
+        }
+        ReentrantLock lock = lock(contato.getId());
+        lock.lock();
+        try {
+            Contato existente = atual.get().get(contato.getId());
+            // Contatos restaurados da persistência mantêm a versão gravada
+            contato.setVersao(existente != null ? existente.getVersao() + 1 : Math.max(1, contato.getVersao()));
+            Publicacao publicacao = publicar(contato.getId(), contato);
+            if (publicacao.anterior() != null) {
+                desindexar(publicacao.anterior());
+            }
+            indexar(contato);
+            escritasConcluidas.incrementAndGet();
+            notificar(publicacao, contato);
+        } finally {
+            lock.unlock();
+        }
+        concluir();
+        return contato;
+    }
+
+    /**
+     * Insere vários contatos publicando uma única versão nova, com a trie
+     * montada de uma vez. Os IDs seguem as mesmas regras de
+     * {@link #inserir(Contato)}; se o lote repetir um ID, vale o último.
+     * Índices e ouvintes são atualizados contato a contato, todos com a
+     * versão do lote.
+     */
+    public List<Contato> inserirTodos(List<Contato> contatos) {
+        Map<Long, Contato> porId = new LinkedHashMap<>();
+        for (Contato contato : contatos) {
+            if (contato.getId() == null) {
+                contato.setId(sequencia.incrementAndGet());
+            } else {
+                sequencia.accumulateAndGet(contato.getId(), Math::max);
+            }
+            porId.put(contato.getId(), contato);
+        }
+
+        // Locks das partições envolvidas, sempre em ordem crescente para não haver deadlock
+        int[] particoes = porId.keySet().stream().mapToInt(ContatoStore::particao).distinct().sorted().toArray();
+        for (int particao : particoes) {
+            locks[particao].lock();
+        }
+        try {
+            Map<Long, Contato> anteriores = new HashMap<>();
+            Snapshot snapshot;
+            Snapshot novo;
+            do {
+                snapshot = atual.get();
+                anteriores.clear();
+                for (Contato contato : porId.values()) {
+                    Contato existente = snapshot.get(contato.getId());
+                    if (existente != null) {
+                        anteriores.put(contato.getId(), existente);
+                    }
+                    contato.setVersao(existente != null ? existente.getVersao() + 1 : Math.max(1, contato.getVersao()));
+                }
+                novo = new Snapshot(snapshot.versao + 1, snapshot.contatos.comTodos(porId.values(), Contato::getId));
+            } while (!atual.compareAndSet(snapshot, novo));
+
+            for (Contato contato : porId.values()) {
+                Publicacao publicacao = new Publicacao(anteriores.get(contato.getId()), novo.versao);
+                if (publicacao.anterior() != null) {
+                    desindexar(publicacao.anterior());
+                }
+                indexar(contato);
+                notificar(publicacao, contato);
+            }
+            escritasConcluidas.incrementAndGet();
+        } finally {
+            for (int i = particoes.length - 1; i >= 0; i--) {
+                locks[particoes[i]].unlock();
+            }
+        }
+        concluir();
+        return new ArrayList<>(porId.values());
+    }
+
+    /**
+     * Substitui o contato com o ID informado pelo registro produzido pela
+     * alteração, publicado inteiro de uma vez com a versão seguinte. Com
+     * {@code versaoEsperada} diferente de zero, a troca só acontece se o
+     * contato ainda estiver nessa versão; caso contrário lança
+     * {@link ConflitoVersaoException} e nada é alterado.
+     */
+    public Optional<Contato> atualizar(Long id, long versaoEsperada, UnaryOperator<ContatoRegistro> alteracao) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Contato alterado;
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            Contato anterior = atual.get().get(id);
+            if (anterior == null) {
+                return Optional.empty();
+            }
+            if (versaoEsperada != 0 && anterior.getVersao() != versaoEsperada) {
+                throw new ConflitoVersaoException(id, versaoEsperada, anterior.getVersao());
+            }
+            alterado = new Contato(alteracao.apply(ContatoRegistro.de(anterior)), anterior.getVersao() + 1);
+            Publicacao publicacao = publicar(id, alterado);
+            desindexar(anterior);
+            indexar(alterado);
+            escritasConcluidas.incrementAndGet();
+            notificar(publicacao, alterado);
+        } finally {
+            lock.unlock();
+        }
+        concluir();
+        return Optional.of(alterado);
+    }
+
+    /**
+     * Remove o contato com o ID informado, retornando-o se existia
+     */
+    public Optional<Contato> remover(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Publicacao publicacao;
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            publicacao = publicar(id, null);
+            if (publicacao == null) {
+                return Optional.empty();
+            }
+            desindexar(publicacao.anterior());
+            escritasConcluidas.incrementAndGet();
+            notificar(publicacao, null);
+        } finally {
+            lock.unlock();
+        }
+        concluir();
+        return Optional.of(publicacao.anterior());
+    }
+
+    /**
+     * Escrita de um lote aplicado por {@link #aplicarLote(List, boolean)}
+     */
+    public sealed interface Escrita {
+    }
+
+    /**
+     * Inclusão com as mesmas regras de {@link #inserir(Contato)}
+     */
+    public record Inclusao(Contato contato) implements Escrita {
+    }
+
+    /**
+     * Alteração com as mesmas regras de {@link #atualizar(Long, long, UnaryOperator)}
+     */
+    public record Alteracao(Long id, long versaoEsperada, UnaryOperator<ContatoRegistro> alteracao)
+            implements Escrita {
+    }
+
+    public record Remocao(Long id) implements Escrita {
+    }
+
+    public enum Situacao {
+        APLICADA,
+        NAO_ENCONTRADO,
+        CONFLITO,
+        // Válida, mas descartada porque outra escrita do lote atômico falhou
+        CANCELADA
+    }
+
+    /**
+     * Resultado de uma escrita do lote. Em um conflito, {@code anterior} é o
+     * contato na versão atual.
+     */
+    public record Efeito(Situacao situacao, Contato anterior, Contato atual) {
+    }
+
+    /**
+     * Aplica as escritas em ordem, cada uma sobre o resultado das anteriores,
+     * e publica todas em uma única versão nova, com os locks das partições
+     * envolvidas adquiridos uma vez para o lote inteiro. Alterações e remoções
+     * de contatos inexistentes e conflitos de versão falham individualmente;
+     * com {@code atomico}, uma falha cancela o lote e nada é publicado.
+     * Índices e ouvintes são atualizados escrita a escrita, todas com a
+     * versão do lote.
+     */
+    public List<Efeito> aplicarLote(List<Escrita> escritas, boolean atomico) {
+        for (Escrita escrita : escritas) {
+            if (escrita instanceof Inclusao inclusao) {
+                Contato contato = inclusao.contato();
+                if (contato.getId() == null) {
+                    contato.setId(sequencia.incrementAndGet());
+                } else {
+                    sequencia.accumulateAndGet(contato.getId(), Math::max);
+                }
+            }
+        }
+
+        int[] particoes = escritas.stream().map(ContatoStore::id).filter(Objects::nonNull)
+                .mapToInt(ContatoStore::particao).distinct().sorted().toArray();
+        for (int particao : particoes) {
+            locks[particao].lock();
+        }
+        Efeito[] efeitos = new Efeito[escritas.size()];
+        try {
+            Snapshot snapshot;
+            Snapshot novo;
+            do {
+                snapshot = atual.get();
+                MapaPersistente<Contato> contatos = snapshot.contatos;
+                boolean falhou = false;
+                for (int i = 0; i < efeitos.length; i++) {
+                    efeitos[i] = aplicar(escritas.get(i), contatos);
+                    falhou |= efeitos[i].situacao() != Situacao.APLICADA;
+                    if (efeitos[i].situacao() == Situacao.APLICADA) {
+                        contatos = efeitos[i].atual() != null
+                                ? contatos.com(efeitos[i].atual().getId(), efeitos[i].atual())
+                                : contatos.sem(efeitos[i].anterior().getId());
+                    }
+                }
+                if (falhou && atomico) {
+                    for (int i = 0; i < efeitos.length; i++) {
+                        if (efeitos[i].situacao() == Situacao.APLICADA) {
+                            efeitos[i] = new Efeito(Situacao.CANCELADA, efeitos[i].anterior(), null);
+                        }
+                    }
+                    return Arrays.asList(efeitos);
+                }
+                if (contatos == snapshot.contatos) {
+                    return Arrays.asList(efeitos);
+                }
+                novo = new Snapshot(snapshot.versao + 1, contatos);
+            } while (!atual.compareAndSet(snapshot, novo));
+
+            for (Efeito efeito : efeitos) {
+                if (efeito.situacao() != Situacao.APLICADA) {
+                    continue;
+                }
+                if (efeito.anterior() != null) {
+                    desindexar(efeito.anterior());
+                }
+                if (efeito.atual() != null) {
+                    indexar(efeito.atual());
+                }
+                notificar(new Publicacao(efeito.anterior(), novo.versao), efeito.atual());
+            }
+            escritasConcluidas.incrementAndGet();
+        } finally {
+            for (int i = particoes.length - 1; i >= 0; i--) {
+                locks[particoes[i]].unlock();
+            }
+        }
+        concluir();
+        return Arrays.asList(efeitos);
+    }
+
+    private static Long id(Escrita escrita) {
+        return switch (escrita) {
+            case Inclusao inclusao -> inclusao.contato().getId();
+            case Alteracao alteracao -> alteracao.id();
+            case Remocao remocao -> remocao.id();
+        };
+    }
+
+    // Efeito da escrita sobre o estado produzido pelas anteriores do lote
+    private static Efeito aplicar(Escrita escrita, MapaPersistente<Contato> contatos) {
+        Long id = id(escrita);
+        Contato anterior = id != null ? contatos.get(id) : null;
+        switch (escrita) {
+            case Inclusao inclusao -> {
+                Contato contato = inclusao.contato();
+                contato.setVersao(anterior != null ? anterior.getVersao() + 1 : Math.max(1, contato.getVersao()));
+                return new Efeito(Situacao.APLICADA, anterior, contato);
+            }
+            case Alteracao alteracao -> {
+                if (anterior == null) {
+                    return new Efeito(Situacao.NAO_ENCONTRADO, null, null);
+                }
+                if (alteracao.versaoEsperada() != 0 && anterior.getVersao() != alteracao.versaoEsperada()) {
+                    return new Efeito(Situacao.CONFLITO, anterior, null);
+                }
+                Contato alterado = new Contato(alteracao.alteracao().apply(ContatoRegistro.de(anterior)),
+                        anterior.getVersao() + 1);
+                return new Efeito(Situacao.APLICADA, anterior, alterado);
+            }
+            case Remocao remocao -> {
+                return anterior != null ? new Efeito(Situacao.APLICADA, anterior, null)
+                        : new Efeito(Situacao.NAO_ENCONTRADO, null, null);
+            }
+        }
+    }
+
+    public int tamanho() {
+        return atual.get().tamanho();
+    }
+
+    private record Publicacao(Contato anterior, long versao) {
+    }
+
+    // Publica a nova versão por CAS; escritas em IDs diferentes só disputam a
+    // raiz. Devolve null quando a remoção não encontra o contato.
+    private Publicacao publicar(long id, Contato contato) {
+        while (true) {
+            Snapshot snapshot = atual.get();
+            Contato anterior = snapshot.get(id);
+            if (contato == null && anterior == null) {
+                return null;
+            }
+            MapaPersistente<Contato> contatos = contato != null
+                    ? snapshot.contatos.com(id, contato) : snapshot.contatos.sem(id);
+            Snapshot novo = new Snapshot(snapshot.versao + 1, contatos);
+            if (atual.compareAndSet(snapshot, novo)) {
+                return new Publicacao(anterior, novo.versao);
+            }
+        }
+    }
+
+    private void notificar(Publicacao publicacao, Contato atual) {
+        for (OuvinteContatos ouvinte : ouvintes) {
+            ouvinte.contatoAlterado(publicacao.anterior(), atual, publicacao.versao());
+        }
+    }
+
+    // Fora dos locks, para que esperas dos ouvintes não segurem outras escritas
+    private void concluir() {
+        for (OuvinteContatos ouvinte : ouvintes) {
+            ouvinte.escritaConcluida();
+        }
+    }
+
+    private ReentrantLock lock(long id) {
+        return locks[particao(id)];
+    }
+
+    static int particao(long id) {
+        return Long.hashCode(id) & (PARTICOES - 1);
+    }
+
+    private void indexar(Contato contato) {
+        for (IndiceContatos indice : indices) {
+            indice.indexar(contato);
+        }
+    }
+
+    private void desindexar(Contato contato) {
+        for (IndiceContatos indice : indices) {
+            indice.desindexar(contato);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +17,9 @@ public class ContatosControle {
 
     private static final Logger logger = LoggerFactory.getLogger(ContatosControle.class);
 
+    // Contatos por página na listagem
+    private static final int TAMANHO_PAGINA = 20;
+
     @Autowired
     private ContatoService contatoService;
 
@@ -28,43 +32,63 @@ public class ContatosControle {
     @GetMapping("/contatos")
     public ModelAndView listar(@RequestParam(required = false) String busca,
             @RequestParam(required = false) String categoria,
-            @RequestParam(required = false) Boolean favorito) {
+            @RequestParam(required = false) Boolean favorito,
+            @RequestParam(required = false) String ordenar,
+            @RequestParam(required = false) String cursor) {
         logger.info("Listando contatos - Busca: {}, Categoria: {}, Favorito: {}", busca, categoria, favorito);
 
         ModelAndView mv = new ModelAndView("listar");
 
-        List<Contato> contatos;
+        Pagina<Contato> pagina;
 
         if (busca != null && !busca.trim().isEmpty()) {
             // Busca por texto
-            contatos = contatoService.buscarPorTexto(busca);
+            pagina = contatoService.buscarPorTexto(busca, ordenar, cursor, TAMANHO_PAGINA);
             mv.addObject("busca", busca);
             logger.debug("Busca por texto aplicada: '{}'", busca);
         } else if (categoria != null && !categoria.trim().isEmpty()) {
             // Busca por categoria
             Categoria cat = Categoria.fromDescricao(categoria);
-            contatos = contatoService.buscarPorCategoria(cat);
+            pagina = contatoService.buscarPorCategoria(cat, ordenar, cursor, TAMANHO_PAGINA);
             mv.addObject("categoriaSelecionada", cat);
             logger.debug("Filtro por categoria aplicado: {}", cat);
         } else if (favorito != null && favorito) {
             // Busca favoritos
-            contatos = contatoService.buscarFavoritos();
+            pagina = contatoService.buscarFavoritos(ordenar, cursor, TAMANHO_PAGINA);
             mv.addObject("mostrarFavoritos", true);
             logger.debug("Filtro por favoritos aplicado");
         } else {
             // Lista todos
-            contatos = contatoService.buscarTodos();
+            pagina = contatoService.buscarTodos(ordenar, cursor, TAMANHO_PAGINA);
             logger.debug("Listando todos os contatos");
         }
 
-        mv.addObject("contatos", contatos);
+        adicionarPagina(mv, pagina, ordenar, cursor);
         mv.addObject("categorias", contatoService.obterCategorias());
         mv.addObject("estatisticas", contatoService.obterEstatisticas());
 
-        logger.info("Retornando {} contatos para listagem", contatos.size());
+        logger.info("Retornando {} contatos para listagem", pagina.itens().size());
         return mv;
     }
 
+    // Itens da página, links para a próxima e para a primeira e o link que
+    // alterna a ordenação por nome, mantendo os demais parâmetros da URL
+    private static void adicionarPagina(ModelAndView mv, Pagina<Contato> pagina, String ordenar, String cursor) {
+        mv.addObject("contatos", pagina.itens());
+        mv.addObject("ordenar", ordenar);
+        mv.addObject("ordenarPorNome", ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("ordenar", "nome".equals(ordenar) ? "nome,desc" : "nome")
+                .replaceQueryParam("cursor").build().toUriString());
+        if (pagina.proximo() != null) {
+            mv.addObject("proximaPagina", ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", pagina.proximo()).build().toUriString());
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            mv.addObject("primeiraPagina", ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor").build().toUriString());
+        }
+    }
+
     @GetMapping("/contatos/novo")
     public ModelAndView novo() {
         logger.info("Acessando formulário de novo contato");
@@ -200,36 +224,39 @@ public class ContatosControle {
     }
 
     @GetMapping("/contatos/favoritos")
-    public ModelAndView favoritos() {
+    public ModelAndView favoritos(@RequestParam(required = false) String ordenar,
+            @RequestParam(required = false) String cursor) {
         logger.info("Acessando lista de contatos favoritos");
 
         ModelAndView mv = new ModelAndView("listar");
-        List<Contato> favoritos = contatoService.buscarFavoritos();
+        Pagina<Contato> favoritos = contatoService.buscarFavoritos(ordenar, cursor, TAMANHO_PAGINA);
 
-        mv.addObject("contatos", favoritos);
+        adicionarPagina(mv, favoritos, ordenar, cursor);
         mv.addObject("categorias", contatoService.obterCategorias());
         mv.addObject("mostrarFavoritos", true);
         mv.addObject("estatisticas", contatoService.obterEstatisticas());
 
-        logger.info("Retornando {} contatos favoritos", favoritos.size());
+        logger.info("Retornando {} contatos favoritos", favoritos.itens().size());
         return mv;
     }
 
     @GetMapping("/contatos/categoria/{categoria}")
-    public ModelAndView porCategoria(@PathVariable String categoria) {
+    public ModelAndView porCategoria(@PathVariable String categoria,
+            @RequestParam(required = false) String ordenar,
+            @RequestParam(required = false) String cursor) {
         logger.info("Acessando contatos por categoria: {}", categoria);
 
         ModelAndView mv = new ModelAndView("listar");
 
         Categoria cat = Categoria.fromDescricao(categoria);
-        List<Contato> contatos = contatoService.buscarPorCategoria(cat);
+        Pagina<Contato> contatos = contatoService.buscarPorCategoria(cat, ordenar, cursor, TAMANHO_PAGINA);
 
-        mv.addObject("contatos", contatos);
+        adicionarPagina(mv, contatos, ordenar, cursor);
         mv.addObject("categorias", contatoService.obterCategorias());
         mv.addObject("categoriaSelecionada", cat);
         mv.addObject("estatisticas", contatoService.obterEstatisticas());
 
-        logger.info("Retornando {} contatos da categoria {}", contatos.size(), cat.getDescricao());
+        logger.info("Retornando {} contatos da categoria {}", contatos.itens().size(), cat.getDescricao());
         return mv;
     }
 }
@@ -0,0 +1,75 @@
+package com.algaworks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Dicionário de textos para colunas codificadas do
+ * {@link ArmazenamentoColunar}. Cada texto distinto recebe um código inteiro
+ * com contagem de referências; códigos sem referência são reaproveitados.
+ *
+ * Não é thread-safe: cada segmento do armazenamento colunar tem o seu,
+ * protegido pelo lock do segmento.
+ */
+class DicionarioTexto {
+
+    private final Map<String, Integer> codigos = new HashMap<>();
+    private final List<String> valores = new ArrayList<>();
+    private int[] referencias = new int[16];
+    private int[] livres = new int[16];
+    private int quantidadeLivres;
+
+    int codificar(String texto) {
+        Integer codigo = codigos.get(texto);
+        if (codigo == null) {
+            if (quantidadeLivres > 0) {
+                codigo = livres[--quantidadeLivres];
+                valores.set(codigo, texto);
+            } else {
+                codigo = valores.size();
+                valores.add(texto);
+                if (codigo == referencias.length) {
+                    referencias = Arrays.copyOf(referencias, codigo * 2);
+                }
+            }
+            codigos.put(texto, codigo);
+        }
+        referencias[codigo]++;
+        return codigo;
+    }
+
+    void liberar(int codigo) {
+        if (--referencias[codigo] == 0) {
+            codigos.remove(valores.get(codigo));
+            valores.set(codigo, null);
+            if (quantidadeLivres == livres.length) {
+                livres = Arrays.copyOf(livres, livres.length * 2);
+            }
+            livres[quantidadeLivres++] = codigo;
+        }
+    }
+
+    /**
+     * Avalia o predicado uma vez por texto distinto, devolvendo os códigos
+     * aceitos. Varreduras sobre a coluna passam a testar só um bit por linha.
+     */
+    BitSet aceitos(Predicate<String> predicado) {
+        BitSet aceitos = new BitSet(valores.size());
+        for (int codigo = 0; codigo < valores.size(); codigo++) {
+            String valor = valores.get(codigo);
+            if (valor != null && predicado.test(valor)) {
+                aceitos.set(codigo);
+            }
+        }
+        return aceitos;
+    }
+
+    int tamanho() {
+        return codigos.size();
+    }
+}
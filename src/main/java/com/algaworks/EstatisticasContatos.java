@@ -0,0 +1,111 @@
+package com.algaworks;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estatísticas dos contatos mantidas de forma incremental. Cada escrita no
+ * {@link ContatoStore} ajusta os agregados (total, favoritos, contagem por
+ * categoria e soma dos anos de nascimento), então a leitura custa O(1).
+ *
+ * A média de idade é derivada da média dos anos de nascimento e do ano atual
+ * no momento da leitura, por isso continua correta na virada do ano sem
+ * precisar percorrer os contatos.
+ */
+public class EstatisticasContatos implements IndiceContatos {
+
+    private final LongAdder total = new LongAdder();
+    private final LongAdder favoritos = new LongAdder();
+    private final AtomicLongArray porCategoria = new AtomicLongArray(Categoria.values().length);
+    private final LongAdder somaAnosNascimento = new LongAdder();
+    private final LongAdder comNascimento = new LongAdder();
+
+    // Incrementada a cada escrita; invalida o mapa publicado anteriormente
+    private final AtomicLong versao = new AtomicLong();
+
+    private volatile Resumo resumo;
+
+    @Override
+    public void indexar(Contato contato) {
+        ajustar(contato, 1);
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        ajustar(contato, -1);
+    }
+
+    private void ajustar(Contato contato, int sinal) {
+        total.add(sinal);
+        if (contato.isFavorito()) {
+            favoritos.add(sinal);
+        }
+        porCategoria.addAndGet(contato.getCategoria().ordinal(), sinal);
+        if (contato.getDataNascimento() != null) {
+            somaAnosNascimento.add((long) sinal * contato.getDataNascimento().getYear());
+            comNascimento.add(sinal);
+        }
+        versao.incrementAndGet();
+    }
+
+    public long total() {
+        return total.sum();
+    }
+
+    public long favoritos() {
+        return favoritos.sum();
+    }
+
+    public long contar(Categoria categoria) {
+        return porCategoria.get(categoria.ordinal());
+    }
+
+    /**
+     * Mapa imutável com as estatísticas. Enquanto não houver escrita nem
+     * mudança de ano, a mesma instância é devolvida sem nova alocação.
+     */
+    public Map<String, Object> obter() {
+        int anoAtual = LocalDate.now().getYear();
+        long versaoAtual = versao.get();
+
+        Resumo atual = resumo;
+        if (atual != null && atual.versao() == versaoAtual && atual.ano() == anoAtual) {
+            return atual.estatisticas();
+        }
+
+        Map<String, Object> estatisticas = calcular(anoAtual);
+        resumo = new Resumo(versaoAtual, anoAtual, estatisticas);
+        return estatisticas;
+    }
+
+    private Map<String, Object> calcular(int anoAtual) {
+        long quantidadeNascimentos = comNascimento.sum();
+        double mediaIdade = quantidadeNascimentos > 0
+                ? anoAtual - (double) somaAnosNascimento.sum() / quantidadeNascimentos
+                : 0.0;
+
+        Map<Categoria, Long> contagemPorCategoria = new EnumMap<>(Categoria.class);
+        for (Categoria categoria : Categoria.values()) {
+            long quantidade = porCategoria.get(categoria.ordinal());
+            if (quantidade > 0) {
+                contagemPorCategoria.put(categoria, quantidade);
+            }
+        }
+
+        Map<String, Object> estatisticas = new HashMap<>();
+        estatisticas.put("total", total.sum());
+        estatisticas.put("favoritos", favoritos.sum());
+        estatisticas.put("mediaIdade", Math.round(mediaIdade * 10.0) / 10.0);
+        estatisticas.put("contagemPorCategoria", Collections.unmodifiableMap(contagemPorCategoria));
+        return Collections.unmodifiableMap(estatisticas);
+    }
+
+    private record Resumo(long versao, int ano, Map<String, Object> estatisticas) {
+    }
+}
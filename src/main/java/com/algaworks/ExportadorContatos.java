@@ -0,0 +1,121 @@
+package com.algaworks;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exporta contatos em CSV ou NDJSON direto de um stream do store para a
+ * saída, um contato por vez. Nada além do bloco em trânsito fica em memória:
+ * a saída é enviada em blocos de {@code contatos.exportacao.bloco} bytes e,
+ * com um cliente lento, a escrita bloqueia e o stream simplesmente deixa de
+ * ser consumido até a rede liberar.
+ *
+ * O CSV usa as colunas aceitas pela importação, mais ID, versão e datas de
+ * controle, que a importação ignora.
+ */
+@Component
+public class ExportadorContatos {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportadorContatos.class);
+
+    static final String CABECALHO_CSV =
+            "id,nome,telefone,email,endereco,dataNascimento,categoria,favorito,dataCriacao,dataAtualizacao,versao";
+
+    private final ObjectMapper objectMapper;
+
+    private final int tamanhoBloco;
+
+    public ExportadorContatos(ObjectMapper objectMapper,
+            @Value("${contatos.exportacao.bloco:65536}") int tamanhoBloco) {
+        this.objectMapper = objectMapper;
+        this.tamanhoBloco = tamanhoBloco;
+    }
+
+    /**
+     * Escreve os contatos na saída e devolve quantos foram exportados. A
+     * saída não é fechada.
+     */
+    public long exportar(Stream<Contato> contatos, FormatoContatos formato, OutputStream saida) throws IOException {
+        long inicio = System.nanoTime();
+        BufferedOutputStream bloco = new BufferedOutputStream(saida, tamanhoBloco);
+        long quantidade = formato == FormatoContatos.CSV ? escreverCsv(contatos, bloco) : escreverNdjson(contatos, bloco);
+        bloco.flush();
+        logger.info("Exportação {} concluída: {} contatos em {} ms", formato, quantidade,
+                (System.nanoTime() - inicio) / 1_000_000);
+        return quantidade;
+    }
+
+    private long escreverNdjson(Stream<Contato> contatos, OutputStream saida) throws IOException {
+        long quantidade = 0;
+        try (JsonGenerator gerador = objectMapper.getFactory().createGenerator(saida)) {
+            gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // O writeValue esvazia o gerador a cada contato; sem repassar o flush,
+            // a saída só recebe blocos cheios e o flush final da exportação
+            gerador.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            gerador.setRootValueSeparator(null);
+            for (Iterator<Contato> iterador = contatos.iterator(); iterador.hasNext();) {
+                objectMapper.writeValue(gerador, iterador.next());
+                gerador.writeRaw('\n');
+                quantidade++;
+            }
+        }
+        return quantidade;
+    }
+
+    private long escreverCsv(Stream<Contato> contatos, OutputStream saida) throws IOException {
+        long quantidade = 0;
+        Writer escritor = new OutputStreamWriter(saida, StandardCharsets.UTF_8);
+        escritor.write(CABECALHO_CSV);
+        escritor.write('\n');
+        StringBuilder linha = new StringBuilder(256);
+        for (Iterator<Contato> iterador = contatos.iterator(); iterador.hasNext();) {
+            Contato contato = iterador.next();
+            linha.setLength(0);
+            linha.append(contato.getId()).append(',');
+            campo(linha, contato.getNome());
+            campo(linha, contato.getTelefone());
+            campo(linha, contato.getEmail());
+            campo(linha, contato.getEndereco());
+            campo(linha, contato.getDataNascimento());
+            campo(linha, contato.getCategoria().name());
+            linha.append(contato.isFavorito()).append(',');
+            campo(linha, contato.getDataCriacao());
+            campo(linha, contato.getDataAtualizacao());
+            linha.append(contato.getVersao()).append('\n');
+            escritor.append(linha);
+            quantidade++;
+        }
+        escritor.flush();
+        return quantidade;
+    }
+
+    // Valor seguido de vírgula; entre aspas quando contém vírgula, aspas ou quebra de linha
+    private static void campo(StringBuilder linha, Object valor) {
+        if (valor != null) {
+            String texto = valor.toString();
+            boolean aspas = false;
+            for (int i = 0; i < texto.length() && !aspas; i++) {
+                char c = texto.charAt(i);
+                aspas = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (aspas) {
+                linha.append('"').append(texto.replace("\"", "\"\"")).append('"');
+            } else {
+                linha.append(texto);
+            }
+        }
+        linha.append(',');
+    }
+}
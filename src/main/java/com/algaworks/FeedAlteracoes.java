@@ -0,0 +1,244 @@
+package com.algaworks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Feed das alterações de contatos para assinantes via Server-Sent Events.
+ * Cada escrita publicada no store vira uma {@link Alteracao} com número de
+ * sequência próprio, guardada em um anel de tamanho fixo
+ * ({@code contatos.feed.capacidade}). Um cliente que reconecta com
+ * {@code Last-Event-ID} recebe o que perdeu, desde que ainda esteja no anel;
+ * se não estiver, recebe um evento {@code reinicio} e deve recarregar a lista.
+ * As sequências de cada execução começam no instante de inicialização em
+ * milissegundos vezes mil, como em {@link RegistroAlteracoes}, então um ID
+ * de uma execução anterior fica sempre abaixo do início da atual e também
+ * leva ao {@code reinicio}.
+ *
+ * A escrita só grava no anel e agenda os assinantes; o envio acontece em
+ * uma thread virtual por assinante, que lê do anel a partir do último
+ * evento que entregou. Um assinante lento atrasa só a si mesmo e, se ficar
+ * para trás mais que o anel, recebe o {@code reinicio} e segue do ponto
+ * atual.
+ */
+@Component
+public class FeedAlteracoes implements OuvinteContatos, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedAlteracoes.class);
+
+    // Eventos lidos do anel por vez, para não segurar o lock durante o envio
+    private static final int LOTE_ENVIO = 256;
+
+    private final Alteracao[] anel;
+
+    // Sequência anterior à primeira alteração desta execução
+    private final long inicio;
+
+    // Sequência da última alteração gravada; as do anel vão de
+    // max(inicio + 1, ultima - capacidade + 1) até ela
+    private long ultima;
+
+    private final Map<Assinante, Boolean> assinantes = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Alteração de um contato, na ordem do feed
+     */
+    public record Alteracao(long sequencia, Tipo tipo, Long id, Contato contato) {
+    }
+
+    /**
+     * Tipo da alteração, também usado como nome do evento SSE
+     */
+    public enum Tipo {
+        CRIADO("criado"),
+        ATUALIZADO("atualizado"),
+        REMOVIDO("removido"),
+        FAVORITO("favorito");
+
+        private final String evento;
+
+        Tipo(String evento) {
+            this.evento = evento;
+        }
+
+        public String getEvento() {
+            return evento;
+        }
+    }
+
+    public FeedAlteracoes(ContatoStore store, @Value("${contatos.feed.capacidade:4096}") int capacidade) {
+        if (capacidade < 1) {
+            throw new IllegalArgumentException("Capacidade do feed deve ser positiva: " + capacidade);
+        }
+        this.anel = new Alteracao[capacidade];
+        this.inicio = System.currentTimeMillis() * 1000;
+        this.ultima = inicio;
+        store.registrarOuvinte(this);
+    }
+
+    @Override
+    public void contatoAlterado(Contato anterior, Contato atual, long versao) {
+        Tipo tipo = anterior == null ? Tipo.CRIADO
+                : atual == null ? Tipo.REMOVIDO
+                : somenteFavorito(anterior, atual) ? Tipo.FAVORITO : Tipo.ATUALIZADO;
+        Long id = atual != null ? atual.getId() : anterior.getId();
+        synchronized (this) {
+            ultima++;
+            anel[(int) (ultima % anel.length)] = new Alteracao(ultima, tipo, id, atual);
+        }
+    }
+
+    // Fora dos locks do store: só marca os assinantes, o envio é assíncrono
+    @Override
+    public void escritaConcluida() {
+        for (Assinante assinante : assinantes.keySet()) {
+            assinante.agendar();
+        }
+    }
+
+    /**
+     * Assina o feed a partir do evento seguinte a {@code ultimoEvento}, ou
+     * das próximas alterações quando ele é null
+     */
+    public SseEmitter assinar(Long ultimoEvento) {
+        SseEmitter emissor = new SseEmitter();
+        assinar(emissor, ultimoEvento);
+        return emissor;
+    }
+
+    void assinar(SseEmitter emissor, Long ultimoEvento) {
+        long atual = ultimaSequencia();
+        // Um ID fora das sequências desta execução vem de antes de um
+        // reinício do servidor; -1 nunca está no anel e leva ao evento de reinício
+        long desde = ultimoEvento == null ? atual
+                : ultimoEvento < inicio || ultimoEvento > atual ? -1 : ultimoEvento;
+        Assinante assinante = new Assinante(emissor, desde);
+        emissor.onCompletion(() -> assinantes.remove(assinante));
+        emissor.onTimeout(emissor::complete);
+        emissor.onError(erro -> assinantes.remove(assinante));
+        assinantes.put(assinante, Boolean.TRUE);
+        logger.info("Feed: nova assinatura a partir da sequência {} ({} assinantes)", assinante.enviada,
+                assinantes.size());
+        assinante.agendar();
+    }
+
+    /**
+     * Sequência da última alteração do feed
+     */
+    public synchronized long ultimaSequencia() {
+        return ultima;
+    }
+
+    /**
+     * Até {@code maximo} alterações com sequência maior que a informada, em
+     * ordem; null quando alguma delas já saiu do anel
+     */
+    synchronized List<Alteracao> desde(long sequencia, int maximo) {
+        long primeira = Math.max(inicio + 1, ultima - anel.length + 1);
+        if (sequencia + 1 < primeira) {
+            return null;
+        }
+        List<Alteracao> alteracoes = new ArrayList<>();
+        for (long s = sequencia + 1; s <= ultima && alteracoes.size() < maximo; s++) {
+            alteracoes.add(anel[(int) (s % anel.length)]);
+        }
+        return alteracoes;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        for (Assinante assinante : assinantes.keySet()) {
+            assinante.emissor.complete();
+        }
+    }
+
+    // Só o favorito mudou; a data de atualização sempre muda junto
+    private static boolean somenteFavorito(Contato anterior, Contato atual) {
+        return anterior.isFavorito() != atual.isFavorito()
+                && Objects.equals(anterior.getNome(), atual.getNome())
+                && Objects.equals(anterior.getTelefone(), atual.getTelefone())
+                && Objects.equals(anterior.getEmail(), atual.getEmail())
+                && Objects.equals(anterior.getEndereco(), atual.getEndereco())
+                && Objects.equals(anterior.getDataNascimento(), atual.getDataNascimento())
+                && anterior.getCategoria() == atual.getCategoria();
+    }
+
+    private final class Assinante {
+
+        final SseEmitter emissor;
+
+        // Só a thread de envio altera, e uma por vez
+        volatile long enviada;
+
+        final AtomicBoolean agendado = new AtomicBoolean();
+
+        Assinante(SseEmitter emissor, long enviada) {
+            this.emissor = emissor;
+            this.enviada = enviada;
+        }
+
+        void agendar() {
+            if (agendado.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::enviarPendentes);
+                } catch (RejectedExecutionException e) {
+                    // Aplicação desligando; as assinaturas são encerradas no destroy
+                }
+            }
+        }
+
+        private void enviarPendentes() {
+            try {
+                while (true) {
+                    List<Alteracao> lote = desde(enviada, LOTE_ENVIO);
+                    if (lote == null) {
+                        long atual = ultimaSequencia();
+                        logger.warn("Feed: assinante perdeu alterações até a sequência {}, enviando reinício", atual);
+                        emissor.send(SseEmitter.event().id(Long.toString(atual)).name("reinicio")
+                                .data(Map.of("sequencia", atual), MediaType.APPLICATION_JSON));
+                        enviada = atual;
+                        continue;
+                    }
+                    if (lote.isEmpty()) {
+                        agendado.set(false);
+                        // Uma escrita pode ter chegado entre a leitura e a liberação
+                        if (ultimaSequencia() > enviada && agendado.compareAndSet(false, true)) {
+                            continue;
+                        }
+                        return;
+                    }
+                    for (Alteracao alteracao : lote) {
+                        emissor.send(SseEmitter.event()
+                                .id(Long.toString(alteracao.sequencia()))
+                                .name(alteracao.tipo().getEvento())
+                                .data(alteracao, MediaType.APPLICATION_JSON));
+                        enviada = alteracao.sequencia();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado ou emissor já encerrado
+                logger.debug("Feed: assinatura encerrada: {}", e.getMessage());
+                assinantes.remove(this);
+                emissor.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.algaworks;
+
+import java.util.Locale;
+import org.springframework.http.MediaType;
+
+/**
+ * Formatos de arquivo aceitos na importação e gerados na exportação em massa:
+ * CSV com cabeçalho ou NDJSON, um objeto JSON por linha.
+ */
+public enum FormatoContatos {
+
+    CSV(MediaType.parseMediaType("text/csv"), "csv"),
+    NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson");
+
+    private final MediaType mediaType;
+    private final String extensao;
+
+    FormatoContatos(MediaType mediaType, String extensao) {
+        this.mediaType = mediaType;
+        this.extensao = extensao;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtensao() {
+        return extensao;
+    }
+
+    /**
+     * Formato pelo nome, sem diferenciar maiúsculas
+     *
+     * @throws IllegalArgumentException se o nome não for csv nem ndjson
+     */
+    public static FormatoContatos de(String nome) {
+        for (FormatoContatos formato : values()) {
+            if (formato.extensao.equalsIgnoreCase(nome)) {
+                return formato;
+            }
+        }
+        throw new IllegalArgumentException("Formato deve ser csv ou ndjson: " + nome);
+    }
+
+    /**
+     * Formato correspondente ao Content-Type; qualquer tipo diferente de CSV é
+     * tratado como NDJSON
+     */
+    public static FormatoContatos de(MediaType tipo) {
+        return tipo.isCompatibleWith(CSV.mediaType) ? CSV : NDJSON;
+    }
+}
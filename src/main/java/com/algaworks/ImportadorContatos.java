@@ -0,0 +1,311 @@
+package com.algaworks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Importa contatos em massa a partir de CSV ou NDJSON. O corpo é lido linha a
+ * linha, sem carregar o arquivo inteiro: a cada lote de linhas, a conversão e a
+ * validação rodam em paralelo e os contatos válidos entram no store de uma vez
+ * com {@link ContatoService#importar(List)}. Linhas rejeitadas não interrompem
+ * a importação e aparecem no relatório com o número da linha.
+ *
+ * No CSV a primeira linha é o cabeçalho, com as colunas em qualquer ordem;
+ * {@code nome} e {@code telefone} são obrigatórias e colunas desconhecidas são
+ * ignoradas. Campos entre aspas podem conter vírgulas, aspas duplicadas e
+ * quebras de linha; o erro de um registro com várias linhas é relatado na
+ * primeira delas. Cada registro vira um contato novo: ID e versão informados
+ * são ignorados.
+ */
+@Component
+public class ImportadorContatos {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportadorContatos.class);
+
+    // Limite de erros detalhados no relatório; os demais só entram na contagem
+    static final int MAXIMO_ERROS = 1_000;
+
+    // Limite de um registro CSV com quebras de linha, para uma aspa sem par não consumir o arquivo inteiro
+    static final int MAXIMO_REGISTRO = 64 * 1024;
+
+    public record ErroLinha(long linha, List<String> mensagens) {
+    }
+
+    public record Resultado(long linhas, long importados, long rejeitados, List<ErroLinha> erros,
+            long duracaoMs, long linhasPorSegundo) {
+    }
+
+    // Uma linha já convertida: o contato, se válido, ou os motivos da rejeição
+    private record Linha(Contato contato, List<String> erros) {
+    }
+
+    private final ContatoService contatoService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final int tamanhoLote;
+
+    public ImportadorContatos(ContatoService contatoService, ObjectMapper objectMapper, Validator validator,
+            @Value("${contatos.importacao.lote:5000}") int tamanhoLote) {
+        this.contatoService = contatoService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    /**
+     * Lê o corpo até o fim e importa as linhas válidas.
+     *
+     * @throws IllegalArgumentException se o CSV não tiver cabeçalho válido
+     */
+    public Resultado importar(InputStream corpo, FormatoContatos formato, Charset charset) throws IOException {
+        long inicio = System.nanoTime();
+        BufferedReader leitor = new BufferedReader(new InputStreamReader(corpo, charset), 64 * 1024);
+
+        long numeroLinha = 0;
+        Map<String, Integer> colunas = null;
+        if (formato == FormatoContatos.CSV) {
+            String cabecalho = leitor.readLine();
+            numeroLinha++;
+            if (cabecalho == null) {
+                throw new IllegalArgumentException("CSV vazio: a primeira linha deve ser o cabeçalho");
+            }
+            colunas = lerCabecalho(cabecalho);
+        }
+
+        long linhas = 0;
+        long importados = 0;
+        long rejeitados = 0;
+        List<ErroLinha> erros = new ArrayList<>();
+        List<String> lote = new ArrayList<>(tamanhoLote);
+        long[] numeros = new long[tamanhoLote];
+        String texto;
+        while (true) {
+            texto = leitor.readLine();
+            if (texto != null) {
+                numeroLinha++;
+                if (texto.isBlank()) {
+                    continue;
+                }
+                numeros[lote.size()] = numeroLinha;
+                // Campo entre aspas com quebra de linha continua nas linhas seguintes; só
+                // as aspas de cada linha nova são contadas, para o registro crescer em tempo linear
+                boolean aspasAbertas = formato == FormatoContatos.CSV && aspasImpares(texto);
+                if (aspasAbertas) {
+                    StringBuilder registro = new StringBuilder(texto);
+                    while (aspasAbertas && registro.length() < MAXIMO_REGISTRO) {
+                        String continuacao = leitor.readLine();
+                        if (continuacao == null) {
+                            break;
+                        }
+                        numeroLinha++;
+                        registro.append('\n').append(continuacao);
+                        aspasAbertas ^= aspasImpares(continuacao);
+                    }
+                    texto = registro.toString();
+                }
+                lote.add(texto);
+            }
+            if (lote.size() == tamanhoLote || (texto == null && !lote.isEmpty())) {
+                Linha[] convertidas = converter(lote, formato, colunas);
+                List<Contato> validos = new ArrayList<>(convertidas.length);
+                for (int i = 0; i < convertidas.length; i++) {
+                    if (convertidas[i].contato() != null) {
+                        validos.add(convertidas[i].contato());
+                        continue;
+                    }
+                    rejeitados++;
+                    if (erros.size() < MAXIMO_ERROS) {
+                        erros.add(new ErroLinha(numeros[i], convertidas[i].erros()));
+                    }
+                }
+                contatoService.importar(validos);
+                importados += validos.size();
+                linhas += lote.size();
+                lote.clear();
+            }
+            if (texto == null) {
+                break;
+            }
+        }
+
+        long nanos = Math.max(1, System.nanoTime() - inicio);
+        long linhasPorSegundo = linhas * 1_000_000_000L / nanos;
+        logger.info("Importação {} concluída: {} de {} linhas importadas em {} ms ({} linhas/s)",
+                formato, importados, linhas, nanos / 1_000_000, linhasPorSegundo);
+        return new Resultado(linhas, importados, rejeitados, erros, nanos / 1_000_000, linhasPorSegundo);
+    }
+
+    private Linha[] converter(List<String> lote, FormatoContatos formato, Map<String, Integer> colunas) {
+        Linha[] convertidas = new Linha[lote.size()];
+        IntStream.range(0, lote.size()).parallel().forEach(i -> {
+            String texto = lote.get(i);
+            convertidas[i] = validar(formato == FormatoContatos.CSV ? deCsv(texto, colunas) : deJson(texto));
+        });
+        return convertidas;
+    }
+
+    private Linha validar(Linha linha) {
+        if (linha.contato() == null) {
+            return linha;
+        }
+        List<String> mensagens = validator.validate(linha.contato()).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .toList();
+        return mensagens.isEmpty() ? linha : new Linha(null, mensagens);
+    }
+
+    private Linha deJson(String texto) {
+        try {
+            Contato contato = objectMapper.readValue(texto, Contato.class);
+            if (contato == null) {
+                return new Linha(null, List.of("Linha deve conter um objeto JSON"));
+            }
+            contato.setId(null);
+            contato.setVersao(0);
+            return new Linha(contato, null);
+        } catch (JsonProcessingException e) {
+            return new Linha(null, List.of("JSON inválido: " + e.getOriginalMessage()));
+        }
+    }
+
+    private Linha deCsv(String texto, Map<String, Integer> colunas) {
+        List<String> campos = separarCampos(texto);
+        if (campos == null) {
+            return new Linha(null, List.of("Aspas não fechadas no registro"));
+        }
+        List<String> mensagens = new ArrayList<>();
+
+        LocalDate dataNascimento = null;
+        String data = campo(campos, colunas, "datanascimento");
+        if (data != null) {
+            try {
+                dataNascimento = LocalDate.parse(data);
+            } catch (DateTimeParseException e) {
+                mensagens.add("Data de nascimento deve estar no formato AAAA-MM-DD: " + data);
+            }
+        }
+
+        Categoria categoria = Categoria.OUTROS;
+        String valorCategoria = campo(campos, colunas, "categoria");
+        if (valorCategoria != null) {
+            Optional<Categoria> conhecida = Categoria.buscar(valorCategoria);
+            if (conhecida.isPresent()) {
+                categoria = conhecida.get();
+            } else {
+                mensagens.add("Categoria desconhecida: " + valorCategoria);
+            }
+        }
+
+        boolean favorito = false;
+        String valorFavorito = campo(campos, colunas, "favorito");
+        if (valorFavorito != null) {
+            switch (valorFavorito.toLowerCase(Locale.ROOT)) {
+                case "true", "sim", "1" -> favorito = true;
+                case "false", "não", "nao", "0" -> favorito = false;
+                default -> mensagens.add("Favorito deve ser true ou false: " + valorFavorito);
+            }
+        }
+
+        if (!mensagens.isEmpty()) {
+            return new Linha(null, mensagens);
+        }
+        return new Linha(new Contato(null, campo(campos, colunas, "nome"), campo(campos, colunas, "telefone"),
+                campo(campos, colunas, "email"), campo(campos, colunas, "endereco"), dataNascimento, categoria,
+                favorito), null);
+    }
+
+    private static Map<String, Integer> lerCabecalho(String cabecalho) {
+        List<String> nomes = separarCampos(cabecalho.startsWith("\uFEFF") ? cabecalho.substring(1) : cabecalho);
+        if (nomes == null) {
+            throw new IllegalArgumentException("Cabeçalho do CSV com aspas não fechadas");
+        }
+        Map<String, Integer> colunas = new HashMap<>();
+        for (int i = 0; i < nomes.size(); i++) {
+            colunas.putIfAbsent(nomes.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!colunas.containsKey("nome") || !colunas.containsKey("telefone")) {
+            throw new IllegalArgumentException("O cabeçalho do CSV deve ter as colunas nome e telefone");
+        }
+        return colunas;
+    }
+
+    // Valor da coluna sem espaços nas pontas; ausente ou vazio vira null
+    private static String campo(List<String> campos, Map<String, Integer> colunas, String coluna) {
+        Integer indice = colunas.get(coluna);
+        if (indice == null || indice >= campos.size()) {
+            return null;
+        }
+        String valor = campos.get(indice).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private static boolean aspasImpares(String texto) {
+        int aspas = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) == '"') {
+                aspas++;
+            }
+        }
+        return (aspas & 1) != 0;
+    }
+
+    /**
+     * Separa um registro CSV em campos, com aspas duplas delimitando campos
+     * que contêm vírgulas ou quebras de linha e {@code ""} representando uma
+     * aspa. Devolve null se alguma aspa ficar aberta.
+     */
+    static List<String> separarCampos(String linha) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c != '"') {
+                    atual.append(c);
+                } else if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else {
+                    entreAspas = false;
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == ',') {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        if (entreAspas) {
+            return null;
+        }
+        campos.add(atual.toString());
+        return campos;
+    }
+}
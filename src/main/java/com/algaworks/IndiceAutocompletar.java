@@ -0,0 +1,238 @@
+package com.algaworks;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trie das palavras dos nomes para o autocompletar. Cada nó corresponde a um
+ * prefixo e guarda pronto o top {@link #TOP} dos contatos com alguma palavra
+ * do nome começando por ele: favoritos primeiro, depois os atualizados mais
+ * recentemente. Uma consulta só desce pelos caracteres do prefixo e devolve
+ * a lista do nó, sem percorrer a subárvore.
+ *
+ * O top de um nó é o top da união entre os contatos cuja palavra termina
+ * nele e os tops dos filhos. A cada escrita, os nós no caminho das palavras
+ * do contato são recalculados de baixo para cima, então o custo de uma
+ * escrita é proporcional ao tamanho das palavras, não ao número de contatos.
+ */
+public class IndiceAutocompletar implements IndiceContatos {
+
+    /**
+     * Sugestões guardadas por prefixo
+     */
+    public static final int TOP = 10;
+
+    private static final Entrada[] VAZIO = new Entrada[0];
+
+    private static final Comparator<Entrada> ORDEM = Comparator
+            .comparing(Entrada::favorito).reversed()
+            .thenComparing(Comparator.comparingLong(Entrada::atualizacao).reversed())
+            .thenComparing(Comparator.comparingLong(Entrada::id).reversed());
+
+    /**
+     * Ordem das sugestões, a mesma do top de cada nó
+     */
+    static final Comparator<Contato> ORDEM_CONTATOS = Comparator.comparing(IndiceAutocompletar::entrada, ORDEM);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final No raiz = new No();
+
+    // A ordem não olha o contato: a entrada recriada do estado antigo na
+    // desindexação é igual à indexada
+    private record Entrada(boolean favorito, long atualizacao, long id, Contato contato) {
+    }
+
+    private static final class No {
+
+        char[] chaves = new char[0];
+        No[] filhos = new No[0];
+        // Contatos com uma palavra que termina neste nó, na ordem de sugestão
+        TreeSet<Entrada> terminais;
+        Entrada[] top = VAZIO;
+
+        No filho(char c) {
+            for (int i = 0; i < chaves.length; i++) {
+                if (chaves[i] == c) {
+                    return filhos[i];
+                }
+            }
+            return null;
+        }
+
+        No criarFilho(char c) {
+            No novo = new No();
+            chaves = Arrays.copyOf(chaves, chaves.length + 1);
+            filhos = Arrays.copyOf(filhos, filhos.length + 1);
+            chaves[chaves.length - 1] = c;
+            filhos[filhos.length - 1] = novo;
+            return novo;
+        }
+
+        void removerFilho(No filho) {
+            for (int i = 0; i < filhos.length; i++) {
+                if (filhos[i] == filho) {
+                    int restantes = filhos.length - i - 1;
+                    System.arraycopy(chaves, i + 1, chaves, i, restantes);
+                    System.arraycopy(filhos, i + 1, filhos, i, restantes);
+                    chaves = Arrays.copyOf(chaves, chaves.length - 1);
+                    filhos = Arrays.copyOf(filhos, filhos.length - 1);
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void indexar(Contato contato) {
+        Entrada entrada = entrada(contato);
+        lock.writeLock().lock();
+        try {
+            for (String palavra : IndiceBkTree.palavras(contato.getNomeBusca())) {
+                No[] caminho = caminho(palavra, true);
+                No fim = caminho[palavra.length()];
+                if (fim.terminais == null) {
+                    fim.terminais = new TreeSet<>(ORDEM);
+                }
+                fim.terminais.add(entrada);
+                recalcular(caminho, palavra);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        Entrada entrada = entrada(contato);
+        lock.writeLock().lock();
+        try {
+            for (String palavra : IndiceBkTree.palavras(contato.getNomeBusca())) {
+                No[] caminho = caminho(palavra, false);
+                if (caminho == null) {
+                    continue;
+                }
+                No fim = caminho[palavra.length()];
+                if (fim.terminais != null && fim.terminais.remove(entrada) && fim.terminais.isEmpty()) {
+                    fim.terminais = null;
+                }
+                recalcular(caminho, palavra);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Até {@code limite} contatos (no máximo {@link #TOP}) com alguma palavra
+     * do nome começando pelo prefixo, já na forma de busca
+     */
+    public List<Contato> sugerir(String prefixo, int limite) {
+        Entrada[] top;
+        lock.readLock().lock();
+        try {
+            No no = raiz;
+            for (int i = 0; i < prefixo.length() && no != null; i++) {
+                no = no.filho(prefixo.charAt(i));
+            }
+            top = no != null ? no.top : VAZIO;
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Contato> contatos = new ArrayList<>(Math.min(limite, top.length));
+        for (int i = 0; i < top.length && contatos.size() < limite; i++) {
+            contatos.add(top[i].contato());
+        }
+        return contatos;
+    }
+
+    /**
+     * Se cada prefixo começa alguma palavra do nome, já na forma de busca
+     */
+    static boolean comecaCom(String nomeBusca, List<String> prefixos) {
+        List<String> palavras = IndiceBkTree.palavras(nomeBusca);
+        for (String prefixo : prefixos) {
+            if (palavras.stream().noneMatch(palavra -> palavra.startsWith(prefixo))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Nós do prefixo vazio até a palavra inteira; null se a palavra não existe e não deve ser criada
+    private No[] caminho(String palavra, boolean criar) {
+        No[] caminho = new No[palavra.length() + 1];
+        No no = raiz;
+        caminho[0] = no;
+        for (int i = 0; i < palavra.length(); i++) {
+            No filho = no.filho(palavra.charAt(i));
+            if (filho == null) {
+                if (!criar) {
+                    return null;
+                }
+                filho = no.criarFilho(palavra.charAt(i));
+            }
+            no = filho;
+            caminho[i + 1] = no;
+        }
+        return caminho;
+    }
+
+    // Recalcula o top do nó mais fundo até a raiz, podando os nós que ficaram vazios
+    private static void recalcular(No[] caminho, String palavra) {
+        for (int i = palavra.length(); i >= 0; i--) {
+            No no = caminho[i];
+            no.top = top(no);
+            if (i > 0 && no.top.length == 0) {
+                caminho[i - 1].removerFilho(no);
+            }
+        }
+    }
+
+    // Um contato que chega por duas palavras com o mesmo prefixo traz a mesma
+    // entrada, que o conjunto ordenado não repete
+    private static Entrada[] top(No no) {
+        TreeSet<Entrada> top = new TreeSet<>(ORDEM);
+        if (no.terminais != null) {
+            for (Entrada entrada : no.terminais) {
+                if (!adicionar(top, entrada)) {
+                    break;
+                }
+            }
+        }
+        for (No filho : no.filhos) {
+            for (Entrada entrada : filho.top) {
+                if (!adicionar(top, entrada)) {
+                    break;
+                }
+            }
+        }
+        return top.toArray(VAZIO);
+    }
+
+    // False quando a entrada fica fora do top; as seguintes da mesma lista
+    // ordenada também ficariam
+    private static boolean adicionar(TreeSet<Entrada> top, Entrada entrada) {
+        if (top.size() == TOP && ORDEM.compare(entrada, top.last()) > 0) {
+            return false;
+        }
+        if (top.add(entrada) && top.size() > TOP) {
+            top.pollLast();
+        }
+        return true;
+    }
+
+    private static Entrada entrada(Contato contato) {
+        LocalDateTime atualizacao = contato.getDataAtualizacao();
+        return new Entrada(contato.isFavorito(),
+                atualizacao != null ? atualizacao.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + atualizacao.getNano()
+                        : Long.MIN_VALUE,
+                contato.getId(), contato);
+    }
+}
@@ -0,0 +1,230 @@
+package com.algaworks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * BK-tree das palavras dos nomes, para a busca tolerante a erros de
+ * digitação. Cada palavra distinta da forma de busca do nome (minúsculas, sem
+ * acentos) é um nó com os IDs dos contatos que a usam; os filhos ficam
+ * pendurados pela distância de edição até o pai.
+ *
+ * Pela desigualdade triangular, uma consulta com distância máxima {@code k}
+ * que está a distância {@code d} de um nó só precisa descer nos filhos entre
+ * {@code d - k} e {@code d + k}, então a distância de Levenshtein é calculada
+ * contra uma fração das palavras, não contra todo contato.
+ *
+ * Palavras que ficam sem contatos continuam na árvore como nós vazios, já que
+ * um BK-tree não remove nós; quando os vazios passam dos vivos, a árvore é
+ * reconstruída só com os vivos.
+ */
+public class IndiceBkTree implements IndiceContatos {
+
+    // Abaixo disso não compensa reconstruir a árvore
+    private static final int MINIMO_RECONSTRUCAO = 1_024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, No> nos = new HashMap<>();
+
+    private No raiz;
+
+    private int vazios;
+
+    private static final class No {
+
+        final String palavra;
+        final Set<Long> ids = new HashSet<>();
+        final Map<Integer, No> filhos = new HashMap<>(4);
+
+        No(String palavra) {
+            this.palavra = palavra;
+        }
+    }
+
+    @Override
+    public void indexar(Contato contato) {
+        lock.writeLock().lock();
+        try {
+            for (String palavra : palavras(contato.getNomeBusca())) {
+                No no = nos.get(palavra);
+                if (no == null) {
+                    no = inserir(palavra);
+                } else if (no.ids.isEmpty()) {
+                    vazios--;
+                }
+                no.ids.add(contato.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        lock.writeLock().lock();
+        try {
+            for (String palavra : palavras(contato.getNomeBusca())) {
+                No no = nos.get(palavra);
+                if (no != null && no.ids.remove(contato.getId()) && no.ids.isEmpty()) {
+                    vazios++;
+                }
+            }
+            if (vazios > MINIMO_RECONSTRUCAO && vazios > nos.size() - vazios) {
+                reconstruir();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * IDs cujo nome tem, para cada palavra buscada, alguma palavra a no
+     * máximo {@code distanciaMaxima} edições. As palavras devem estar na
+     * forma de busca.
+     */
+    public Set<Long> candidatos(List<String> palavras, int distanciaMaxima) {
+        lock.readLock().lock();
+        try {
+            Set<Long> resultado = null;
+            for (String palavra : palavras) {
+                Set<Long> ids = new HashSet<>();
+                buscar(palavra, distanciaMaxima, no -> ids.addAll(no.ids));
+                if (resultado == null) {
+                    resultado = ids;
+                } else {
+                    resultado.retainAll(ids);
+                }
+                if (resultado.isEmpty()) {
+                    break;
+                }
+            }
+            return resultado != null ? resultado : Set.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Soma, para cada palavra buscada, da menor distância até uma palavra do
+     * nome; -1 quando alguma palavra buscada não chega a
+     * {@code distanciaMaxima} de nenhuma palavra do nome
+     */
+    static int distancia(String nomeBusca, List<String> palavras, int distanciaMaxima) {
+        List<String> doNome = palavras(nomeBusca);
+        int total = 0;
+        for (String palavra : palavras) {
+            int menor = Integer.MAX_VALUE;
+            for (int i = 0; i < doNome.size() && menor > 0; i++) {
+                menor = Math.min(menor, levenshtein(palavra, doNome.get(i)));
+            }
+            if (menor > distanciaMaxima) {
+                return -1;
+            }
+            total += menor;
+        }
+        return total;
+    }
+
+    /**
+     * Palavras distintas de um texto já na forma de busca
+     */
+    static List<String> palavras(String textoBusca) {
+        List<String> palavras = new ArrayList<>();
+        if (textoBusca != null) {
+            for (String palavra : textoBusca.split("\\s+")) {
+                if (!palavra.isEmpty() && !palavras.contains(palavra)) {
+                    palavras.add(palavra);
+                }
+            }
+        }
+        return palavras;
+    }
+
+    static int levenshtein(String a, String b) {
+        if (a.length() < b.length()) {
+            String troca = a;
+            a = b;
+            b = troca;
+        }
+        int[] anterior = new int[b.length() + 1];
+        int[] atual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            atual[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substituicao = anterior[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                atual[j] = Math.min(substituicao, Math.min(anterior[j], atual[j - 1]) + 1);
+            }
+            int[] troca = anterior;
+            anterior = atual;
+            atual = troca;
+        }
+        return anterior[b.length()];
+    }
+
+    private void buscar(String palavra, int distanciaMaxima, Consumer<No> encontrado) {
+        if (raiz == null) {
+            return;
+        }
+        Deque<No> pendentes = new ArrayDeque<>();
+        pendentes.push(raiz);
+        while (!pendentes.isEmpty()) {
+            No no = pendentes.pop();
+            int distancia = levenshtein(palavra, no.palavra);
+            if (distancia <= distanciaMaxima && !no.ids.isEmpty()) {
+                encontrado.accept(no);
+            }
+            for (Map.Entry<Integer, No> filho : no.filhos.entrySet()) {
+                if (Math.abs(filho.getKey() - distancia) <= distanciaMaxima) {
+                    pendentes.push(filho.getValue());
+                }
+            }
+        }
+    }
+
+    private No inserir(String palavra) {
+        No novo = new No(palavra);
+        nos.put(palavra, novo);
+        if (raiz == null) {
+            raiz = novo;
+            return novo;
+        }
+        No no = raiz;
+        while (true) {
+            int distancia = levenshtein(palavra, no.palavra);
+            No filho = no.filhos.get(distancia);
+            if (filho == null) {
+                no.filhos.put(distancia, novo);
+                return novo;
+            }
+            no = filho;
+        }
+    }
+
+    private void reconstruir() {
+        List<No> vivos = new ArrayList<>();
+        for (No no : nos.values()) {
+            if (!no.ids.isEmpty()) {
+                vivos.add(no);
+            }
+        }
+        nos.clear();
+        raiz = null;
+        vazios = 0;
+        for (No vivo : vivos) {
+            inserir(vivo.palavra).ids.addAll(vivo.ids);
+        }
+    }
+}
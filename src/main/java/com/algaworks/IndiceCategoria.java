@@ -0,0 +1,40 @@
+package com.algaworks;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice secundário de IDs por categoria. Cada categoria guarda seus IDs em
+ * ordem crescente, então a listagem por categoria custa o tamanho do
+ * resultado e já sai na mesma ordem da listagem geral.
+ */
+public class IndiceCategoria implements IndiceContatos {
+
+    private final Map<Categoria, NavigableSet<Long>> idsPorCategoria = new EnumMap<>(Categoria.class);
+
+    public IndiceCategoria() {
+        for (Categoria categoria : Categoria.values()) {
+            idsPorCategoria.put(categoria, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    @Override
+    public void indexar(Contato contato) {
+        idsPorCategoria.get(contato.getCategoria()).add(contato.getId());
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        idsPorCategoria.get(contato.getCategoria()).remove(contato.getId());
+    }
+
+    /**
+     * IDs da categoria em ordem crescente (visão somente leitura, sem cópia)
+     */
+    public NavigableSet<Long> ids(Categoria categoria) {
+        return Collections.unmodifiableNavigableSet(idsPorCategoria.get(categoria));
+    }
+}
@@ -0,0 +1,14 @@
+package com.algaworks;
+
+/**
+ * Contrato dos índices secundários mantidos pelo {@link ContatoStore}. O store
+ * chama {@link #desindexar(Contato)} com o estado antigo e
+ * {@link #indexar(Contato)} com o estado novo a cada escrita, sempre dentro da
+ * seção atômica do contato, então escritas no mesmo ID nunca se intercalam.
+ */
+public interface IndiceContatos {
+
+    void indexar(Contato contato);
+
+    void desindexar(Contato contato);
+}
@@ -0,0 +1,78 @@
+package com.algaworks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice ordenado por data de nascimento. As entradas (data, ID) ficam em um
+ * conjunto navegável, então uma consulta por intervalo percorre apenas a
+ * fatia de datas pedida. Contatos sem data de nascimento não são indexados,
+ * já que nunca atendem a um filtro por data.
+ */
+public class IndiceDataNascimento implements IndiceContatos {
+
+    private static final Comparator<Entrada> ORDEM = Comparator
+            .comparingLong(Entrada::diaEpoca)
+            .thenComparingLong(Entrada::id);
+
+    private final NavigableSet<Entrada> entradas = new ConcurrentSkipListSet<>(ORDEM);
+
+    @Override
+    public void indexar(Contato contato) {
+        if (contato.getDataNascimento() != null) {
+            entradas.add(new Entrada(contato.getDataNascimento().toEpochDay(), contato.getId()));
+        }
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        if (contato.getDataNascimento() != null) {
+            entradas.remove(new Entrada(contato.getDataNascimento().toEpochDay(), contato.getId()));
+        }
+    }
+
+    /**
+     * IDs nascidos entre as datas informadas (inclusive), em ordem crescente
+     * de ID. Um limite nulo deixa o intervalo aberto daquele lado.
+     */
+    public List<Long> ids(LocalDate inicio, LocalDate fim) {
+        List<Long> ids = new ArrayList<>();
+        for (Entrada entrada : fatia(inicio, fim)) {
+            ids.add(entrada.id());
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    /**
+     * Conta as entradas do intervalo, parando ao atingir o limite. Serve de
+     * estimativa de custo sem percorrer fatias maiores que a alternativa.
+     */
+    public long contar(LocalDate inicio, LocalDate fim, long limite) {
+        long quantidade = 0;
+        Iterator<Entrada> iterator = fatia(inicio, fim).iterator();
+        while (quantidade < limite && iterator.hasNext()) {
+            iterator.next();
+            quantidade++;
+        }
+        return quantidade;
+    }
+
+    private NavigableSet<Entrada> fatia(LocalDate inicio, LocalDate fim) {
+        Entrada de = new Entrada(inicio != null ? inicio.toEpochDay() : Long.MIN_VALUE, Long.MIN_VALUE);
+        Entrada ate = new Entrada(fim != null ? fim.toEpochDay() : Long.MAX_VALUE, Long.MAX_VALUE);
+        if (ORDEM.compare(de, ate) > 0) {
+            return Collections.emptyNavigableSet();
+        }
+        return entradas.subSet(de, true, ate, true);
+    }
+
+    private record Entrada(long diaEpoca, long id) {
+    }
+}
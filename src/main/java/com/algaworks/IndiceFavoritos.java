@@ -0,0 +1,32 @@
+package com.algaworks;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice secundário com os IDs dos contatos favoritos, em ordem crescente.
+ */
+public class IndiceFavoritos implements IndiceContatos {
+
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+
+    @Override
+    public void indexar(Contato contato) {
+        if (contato.isFavorito()) {
+            ids.add(contato.getId());
+        }
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        ids.remove(contato.getId());
+    }
+
+    /**
+     * IDs dos favoritos em ordem crescente (visão somente leitura, sem cópia)
+     */
+    public NavigableSet<Long> ids() {
+        return Collections.unmodifiableNavigableSet(ids);
+    }
+}
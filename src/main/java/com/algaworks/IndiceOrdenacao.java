@@ -0,0 +1,175 @@
+package com.algaworks;
+
+import java.nio.ByteBuffer;
+import java.text.Collator;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Índices ordenados por nome e pelas datas do contato, para listagens
+ * ordenadas sem ordenar o conjunto a cada requisição. Cada campo guarda
+ * entradas (chave, ID) em um conjunto navegável, mantido a cada escrita.
+ *
+ * A chave é calculada uma única vez por escrita e comparada como bytes sem
+ * sinal. Para o nome é a {@link java.text.CollationKey} de um
+ * {@link Collator} pt-BR, que ordena "Joao" antes de "João" e este antes de
+ * "Joaquim", sem que cada comparação percorra as strings com as regras de
+ * colação. Datas viram bytes big-endian com o bit de sinal invertido; datas
+ * ausentes têm chave vazia e ficam no começo da ordem crescente.
+ *
+ * A paginação é por chave: o cursor guarda a chave e o ID da última entrada
+ * entregue, e a página seguinte começa logo depois dela no conjunto.
+ */
+public class IndiceOrdenacao implements IndiceContatos {
+
+    private static final Ordenacao.Campo[] CAMPOS = Ordenacao.Campo.values();
+
+    private static final Comparator<Entrada> ORDEM = (a, b) -> {
+        int comparacao = Arrays.compareUnsigned(a.chave(), b.chave());
+        return comparacao != 0 ? comparacao : Long.compare(a.id(), b.id());
+    };
+
+    // Campo e direção (2 bytes) e ID (8 bytes) antes da chave
+    private static final int CABECALHO_CURSOR = 2 + Long.BYTES;
+
+    // Os métodos de RuleBasedCollator são sincronizados, então uma instância basta
+    private final Collator collator = Collator.getInstance(Locale.of("pt", "BR"));
+
+    private final Map<Ordenacao.Campo, NavigableSet<Entrada>> entradas = new EnumMap<>(Ordenacao.Campo.class);
+
+    // Entradas vigentes de cada contato, para desindexar sem recalcular as chaves
+    private final ConcurrentHashMap<Long, Registro> registros = new ConcurrentHashMap<>();
+
+    public IndiceOrdenacao() {
+        for (Ordenacao.Campo campo : CAMPOS) {
+            entradas.put(campo, new ConcurrentSkipListSet<>(ORDEM));
+        }
+    }
+
+    @Override
+    public void indexar(Contato contato) {
+        Entrada[] porCampo = new Entrada[CAMPOS.length];
+        for (Ordenacao.Campo campo : CAMPOS) {
+            Entrada entrada = new Entrada(chave(campo, contato), contato.getId());
+            entradas.get(campo).add(entrada);
+            porCampo[campo.ordinal()] = entrada;
+        }
+        registros.put(contato.getId(), new Registro(contato, porCampo));
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        Registro registro = registros.remove(contato.getId());
+        if (registro != null) {
+            for (Ordenacao.Campo campo : CAMPOS) {
+                entradas.get(campo).remove(registro.entradas()[campo.ordinal()]);
+            }
+        }
+    }
+
+    /**
+     * Contatos na ordem pedida, a partir da posição seguinte ao cursor (ou do
+     * início, sem cursor). O stream percorre o índice sob demanda, então ler
+     * uma página custa o tamanho da página, não o do conjunto.
+     *
+     * @throws IllegalArgumentException se o cursor não foi gerado para esta ordenação
+     */
+    public Stream<Contato> contatos(Ordenacao ordenacao, String cursor) {
+        NavigableSet<Entrada> conjunto = entradas.get(ordenacao.campo());
+        Entrada apos = cursor == null || cursor.isEmpty() ? null : decodificar(ordenacao, cursor);
+        if (ordenacao.decrescente()) {
+            conjunto = (apos != null ? conjunto.headSet(apos, false) : conjunto).descendingSet();
+        } else if (apos != null) {
+            conjunto = conjunto.tailSet(apos, false);
+        }
+        // Só a entrada vigente do contato é entregue: durante uma escrita a
+        // antiga pode ainda estar no conjunto
+        int indice = ordenacao.campo().ordinal();
+        return conjunto.stream()
+                .map(entrada -> {
+                    Registro registro = registros.get(entrada.id());
+                    return registro != null && registro.entradas()[indice] == entrada ? registro.contato() : null;
+                })
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Cursor que continua a listagem ordenada logo depois do contato
+     */
+    public String cursor(Ordenacao ordenacao, Contato contato) {
+        Registro registro = registros.get(contato.getId());
+        byte[] chave = registro != null && registro.contato() == contato
+                ? registro.entradas()[ordenacao.campo().ordinal()].chave()
+                : chave(ordenacao.campo(), contato);
+        ByteBuffer bytes = ByteBuffer.allocate(CABECALHO_CURSOR + chave.length)
+                .put((byte) ordenacao.campo().ordinal())
+                .put((byte) (ordenacao.decrescente() ? 1 : 0))
+                .putLong(contato.getId())
+                .put(chave);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    private static Entrada decodificar(Ordenacao ordenacao, String cursor) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+        if (bytes.length < CABECALHO_CURSOR || bytes[0] != ordenacao.campo().ordinal()
+                || bytes[1] != (ordenacao.decrescente() ? 1 : 0)) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+        long id = buffer.getLong();
+        byte[] chave = new byte[buffer.remaining()];
+        buffer.get(chave);
+        return new Entrada(chave, id);
+    }
+
+    private byte[] chave(Ordenacao.Campo campo, Contato contato) {
+        return switch (campo) {
+            case NOME -> contato.getNome() != null ? collator.getCollationKey(contato.getNome()).toByteArray()
+                    : new byte[0];
+            case DATA_NASCIMENTO -> chave(contato.getDataNascimento());
+            case DATA_CRIACAO -> chave(contato.getDataCriacao());
+            case DATA_ATUALIZACAO -> chave(contato.getDataAtualizacao());
+        };
+    }
+
+    private static byte[] chave(LocalDate data) {
+        if (data == null) {
+            return new byte[0];
+        }
+        return ByteBuffer.allocate(Long.BYTES).putLong(data.toEpochDay() ^ Long.MIN_VALUE).array();
+    }
+
+    private static byte[] chave(LocalDateTime dataHora) {
+        if (dataHora == null) {
+            return new byte[0];
+        }
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES)
+                .putLong(dataHora.toEpochSecond(ZoneOffset.UTC) ^ Long.MIN_VALUE)
+                .putInt(dataHora.getNano())
+                .array();
+    }
+
+    // Comparada só pelo ORDEM do conjunto; a igualdade do record não é usada
+    private record Entrada(byte[] chave, long id) {
+    }
+
+    private record Registro(Contato contato, Entrada[] entradas) {
+    }
+}
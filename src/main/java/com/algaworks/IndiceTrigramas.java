@@ -0,0 +1,151 @@
+package com.algaworks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice invertido de trigramas para a busca por texto. Para cada contato são
+ * extraídos os trigramas das formas de busca de nome, email e endereço
+ * (minúsculas, sem acentos) e dos dígitos do telefone, cada trigrama
+ * apontando para os IDs que o contêm.
+ *
+ * Uma consulta intersecta as listas dos seus trigramas e devolve apenas os
+ * candidatos, que ainda precisam ser verificados com o predicado original. O
+ * índice nunca descarta um contato que casaria com a consulta, mas pode
+ * devolver falsos positivos.
+ */
+public class IndiceTrigramas implements IndiceContatos {
+
+    static final int TAMANHO = 3;
+
+    private final ConcurrentHashMap<Long, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    @Override
+    public void indexar(Contato contato) {
+        Long id = contato.getId();
+        for (Long trigrama : trigramas(contato)) {
+            postings.compute(trigrama, (chave, ids) -> {
+                Set<Long> lista = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                lista.add(id);
+                return lista;
+            });
+        }
+    }
+
+    @Override
+    public void desindexar(Contato contato) {
+        Long id = contato.getId();
+        for (Long trigrama : trigramas(contato)) {
+            postings.computeIfPresent(trigrama, (chave, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * IDs candidatos para o texto já normalizado, em ordem crescente, somando
+     * os candidatos dos dígitos quando a busca se parece com um telefone
+     * ({@code digitos} não nulo). Retorna vazio quando alguma das formas é
+     * curta demais para ter trigramas e a consulta precisa de uma varredura
+     * completa.
+     */
+    public Optional<TreeSet<Long>> candidatos(String textoBusca, String digitos) {
+        if (textoBusca.length() < TAMANHO || (digitos != null && digitos.length() < TAMANHO)) {
+            return Optional.empty();
+        }
+
+        TreeSet<Long> candidatos = new TreeSet<>(intersectar(trigramas(textoBusca)));
+        if (digitos != null && !digitos.equals(textoBusca)) {
+            candidatos.addAll(intersectar(trigramas(digitos)));
+        }
+        return Optional.of(candidatos);
+    }
+
+    /**
+     * IDs que contêm todos os trigramas do texto exatamente como informado,
+     * em ordem crescente; o texto deve estar na forma de busca do campo
+     */
+    public Optional<TreeSet<Long>> candidatosExatos(String texto) {
+        if (texto.length() < TAMANHO) {
+            return Optional.empty();
+        }
+        return Optional.of(new TreeSet<>(intersectar(trigramas(texto))));
+    }
+
+    /**
+     * Limite superior de candidatos para o texto exato: o tamanho da menor
+     * lista entre seus trigramas. Retorna -1 quando o índice não se aplica.
+     */
+    public long estimar(String texto) {
+        if (texto.length() < TAMANHO) {
+            return -1;
+        }
+        long menor = Long.MAX_VALUE;
+        for (Long trigrama : trigramas(texto)) {
+            Set<Long> ids = postings.get(trigrama);
+            if (ids == null) {
+                return 0;
+            }
+            menor = Math.min(menor, ids.size());
+        }
+        return menor;
+    }
+
+    private List<Long> intersectar(Set<Long> trigramas) {
+        List<Set<Long>> listas = new ArrayList<>(trigramas.size());
+        for (Long trigrama : trigramas) {
+            Set<Long> ids = postings.get(trigrama);
+            if (ids == null) {
+                return List.of();
+            }
+            listas.add(ids);
+        }
+
+        // Percorre a menor lista e confere a presença nas demais
+        listas.sort(Comparator.comparingInt(Set::size));
+        List<Long> resultado = new ArrayList<>();
+        for (Long id : listas.get(0)) {
+            boolean emTodas = true;
+            for (int i = 1; i < listas.size() && emTodas; i++) {
+                emTodas = listas.get(i).contains(id);
+            }
+            if (emTodas) {
+                resultado.add(id);
+            }
+        }
+        return resultado;
+    }
+
+    private static Set<Long> trigramas(Contato contato) {
+        Set<Long> trigramas = new HashSet<>();
+        adicionarTrigramas(trigramas, contato.getNomeBusca());
+        adicionarTrigramas(trigramas, contato.getTelefoneDigitos());
+        adicionarTrigramas(trigramas, contato.getEmailBusca());
+        adicionarTrigramas(trigramas, contato.getEnderecoBusca());
+        return trigramas;
+    }
+
+    private static Set<Long> trigramas(String texto) {
+        Set<Long> trigramas = new HashSet<>();
+        adicionarTrigramas(trigramas, texto);
+        return trigramas;
+    }
+
+    private static void adicionarTrigramas(Set<Long> trigramas, String texto) {
+        if (texto == null) {
+            return;
+        }
+        for (int i = 0; i + TAMANHO <= texto.length(); i++) {
+            trigramas.add(((long) texto.charAt(i) << 32)
+                    | ((long) texto.charAt(i + 1) << 16)
+                    | texto.charAt(i + 2));
+        }
+    }
+}
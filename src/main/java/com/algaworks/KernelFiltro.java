@@ -0,0 +1,66 @@
+package com.algaworks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kernel que avalia os critérios não textuais do filtro (categoria, favorito
+ * e intervalo de nascimento) sobre as colunas do {@link ArmazenamentoColunar},
+ * produzindo uma máscara de bits com uma palavra de 64 bits para cada 64
+ * linhas.
+ *
+ * A implementação vetorial usa a Vector API ({@code jdk.incubator.vector}) e
+ * só é carregada quando a JVM foi iniciada com
+ * {@code --add-modules jdk.incubator.vector}; caso contrário vale a escalar.
+ */
+public interface KernelFiltro {
+
+    int SEM_CATEGORIA = -1;
+    int FAVORITO_QUALQUER = -1;
+
+    /**
+     * Restringe a máscara às linhas que atendem aos critérios. A máscara
+     * chega com as linhas ocupadas; critérios desligados (categoria
+     * {@link #SEM_CATEGORIA}, favorito {@link #FAVORITO_QUALQUER} ou
+     * {@code filtraData} falso) não alteram o resultado.
+     */
+    void filtrar(byte[] categorias, int[] nascimentos, long[] favoritos, int linhas,
+            int categoria, int favorito, boolean filtraData, int diaInicio, int diaFim, long[] mascara);
+
+    String nome();
+
+    static KernelFiltro disponivel() {
+        return Selecao.KERNEL;
+    }
+
+    static KernelFiltro escalar() {
+        return new KernelFiltroEscalar();
+    }
+
+    /**
+     * Escolhe o kernel uma única vez, na primeira utilização
+     */
+    final class Selecao {
+
+        private static final Logger logger = LoggerFactory.getLogger(KernelFiltro.class);
+
+        static final KernelFiltro KERNEL = selecionar();
+
+        private Selecao() {
+        }
+
+        private static KernelFiltro selecionar() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                try {
+                    KernelFiltro kernel = (KernelFiltro) Class.forName("com.algaworks.KernelFiltroVetorial")
+                            .getDeclaredConstructor().newInstance();
+                    logger.info("Kernel de filtro vetorial habilitado: {}", kernel.nome());
+                    return kernel;
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    logger.warn("Vector API indisponível, usando kernel escalar: {}", e.getMessage());
+                }
+            }
+            return new KernelFiltroEscalar();
+        }
+    }
+}
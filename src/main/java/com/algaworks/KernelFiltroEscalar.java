@@ -0,0 +1,43 @@
+package com.algaworks;
+
+/**
+ * Implementação escalar do {@link KernelFiltro}, usada quando a Vector API
+ * não está disponível e como referência nos testes.
+ */
+class KernelFiltroEscalar implements KernelFiltro {
+
+    @Override
+    public void filtrar(byte[] categorias, int[] nascimentos, long[] favoritos, int linhas,
+            int categoria, int favorito, boolean filtraData, int diaInicio, int diaFim, long[] mascara) {
+        int palavras = (linhas + 63) >>> 6;
+        for (int palavra = 0; palavra < palavras; palavra++) {
+            long bits = mascara[palavra];
+            if (favorito == 1) {
+                bits &= favoritos[palavra];
+            } else if (favorito == 0) {
+                bits &= ~favoritos[palavra];
+            }
+            if (bits == 0) {
+                mascara[palavra] = 0;
+                continue;
+            }
+
+            int base = palavra << 6;
+            int fim = Math.min(64, linhas - base);
+            long aceitos = 0;
+            for (int i = 0; i < fim; i++) {
+                int linha = base + i;
+                if ((categoria < 0 || categorias[linha] == categoria)
+                        && (!filtraData || (nascimentos[linha] >= diaInicio && nascimentos[linha] <= diaFim))) {
+                    aceitos |= 1L << i;
+                }
+            }
+            mascara[palavra] = bits & aceitos;
+        }
+    }
+
+    @Override
+    public String nome() {
+        return "escalar";
+    }
+}
@@ -0,0 +1,92 @@
+package com.algaworks;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementação do {@link KernelFiltro} com a Vector API. Cada bloco de 64
+ * linhas é comparado em lanes SIMD (categoria em bytes, nascimento em
+ * inteiros) e as máscaras das comparações viram diretamente os bits da
+ * palavra de resultado. Linhas finais que não completam um vetor seguem pelo
+ * caminho escalar.
+ *
+ * Carregada apenas por reflexão em {@link KernelFiltro#disponivel()}.
+ */
+class KernelFiltroVetorial implements KernelFiltro {
+
+    // Uma máscara de comparação precisa caber nos 64 bits de uma palavra
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED.length() <= 64
+            ? ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_512;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED.length() <= 64
+            ? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_512;
+
+    @Override
+    public void filtrar(byte[] categorias, int[] nascimentos, long[] favoritos, int linhas,
+            int categoria, int favorito, boolean filtraData, int diaInicio, int diaFim, long[] mascara) {
+        int palavras = (linhas + 63) >>> 6;
+        byte categoriaByte = (byte) categoria;
+        for (int palavra = 0; palavra < palavras; palavra++) {
+            long bits = mascara[palavra];
+            if (favorito == 1) {
+                bits &= favoritos[palavra];
+            } else if (favorito == 0) {
+                bits &= ~favoritos[palavra];
+            }
+            if (bits == 0) {
+                mascara[palavra] = 0;
+                continue;
+            }
+
+            int base = palavra << 6;
+            int fim = Math.min(64, linhas - base);
+            if (categoria >= 0) {
+                bits &= compararCategoria(categorias, base, fim, categoriaByte);
+            }
+            if (filtraData && bits != 0) {
+                bits &= compararNascimento(nascimentos, base, fim, diaInicio, diaFim);
+            }
+            mascara[palavra] = bits;
+        }
+    }
+
+    private static long compararCategoria(byte[] categorias, int base, int fim, byte categoria) {
+        long aceitos = 0;
+        int i = 0;
+        for (; i + BYTES.length() <= fim; i += BYTES.length()) {
+            aceitos |= ByteVector.fromArray(BYTES, categorias, base + i)
+                    .compare(VectorOperators.EQ, categoria)
+                    .toLong() << i;
+        }
+        for (; i < fim; i++) {
+            if (categorias[base + i] == categoria) {
+                aceitos |= 1L << i;
+            }
+        }
+        return aceitos;
+    }
+
+    private static long compararNascimento(int[] nascimentos, int base, int fim, int diaInicio, int diaFim) {
+        long aceitos = 0;
+        int i = 0;
+        for (; i + INTS.length() <= fim; i += INTS.length()) {
+            IntVector dias = IntVector.fromArray(INTS, nascimentos, base + i);
+            aceitos |= dias.compare(VectorOperators.GE, diaInicio)
+                    .and(dias.compare(VectorOperators.LE, diaFim))
+                    .toLong() << i;
+        }
+        for (; i < fim; i++) {
+            int dia = nascimentos[base + i];
+            if (dia >= diaInicio && dia <= diaFim) {
+                aceitos |= 1L << i;
+            }
+        }
+        return aceitos;
+    }
+
+    @Override
+    public String nome() {
+        return "vetorial " + BYTES + " / " + INTS;
+    }
+}
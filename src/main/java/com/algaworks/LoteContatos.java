@@ -0,0 +1,185 @@
+package com.algaworks;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aplica em uma requisição várias inclusões, atualizações e remoções de
+ * contatos. As operações são validadas antes e as válidas entram no store de
+ * uma vez com {@link ContatoService#aplicarLote(List, boolean)}: um único
+ * ciclo de locks e uma única versão publicada para o lote, com um resultado
+ * por operação no lugar de uma requisição e suas linhas de log para cada uma.
+ *
+ * Cada operação enxerga o resultado das anteriores do mesmo lote. No modo
+ * atômico, qualquer falha (validação, contato inexistente ou conflito de
+ * versão) cancela o lote inteiro e nada é alterado. Inclusões sempre criam um
+ * contato novo: ID e versão informados são ignorados. Atualizações com
+ * {@code versao} diferente de zero só acontecem se o contato ainda estiver
+ * nessa versão, como no PUT.
+ */
+@Component
+public class LoteContatos {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoteContatos.class);
+
+    static final int MAXIMO_OPERACOES = 1_000;
+
+    public enum Tipo {
+        CRIAR,
+        ATUALIZAR,
+        REMOVER
+    }
+
+    public record Operacao(Tipo tipo, Long id, Contato contato) {
+    }
+
+    public record Requisicao(boolean atomico, List<Operacao> operacoes) {
+    }
+
+    /**
+     * Resultado de uma operação, com o status HTTP que ela teria sozinha; 424
+     * indica uma operação válida cancelada pela falha de outra no modo atômico
+     */
+    public record ResultadoOperacao(int indice, Tipo tipo, Long id, int status, String mensagem, Contato contato) {
+    }
+
+    public record Resultado(boolean atomico, boolean aplicado, int sucessos, int falhas,
+            List<ResultadoOperacao> resultados) {
+    }
+
+    private final ContatoService contatoService;
+
+    private final Validator validator;
+
+    public LoteContatos(ContatoService contatoService, Validator validator) {
+        this.contatoService = contatoService;
+        this.validator = validator;
+    }
+
+    /**
+     * Valida e aplica as operações, na ordem em que vieram
+     *
+     * @throws IllegalArgumentException se o lote estiver vazio ou passar de
+     *                                  {@value #MAXIMO_OPERACOES} operações
+     */
+    public Resultado executar(Requisicao requisicao) {
+        List<Operacao> operacoes = requisicao.operacoes();
+        if (operacoes == null || operacoes.isEmpty()) {
+            throw new IllegalArgumentException("Lote sem operações");
+        }
+        if (operacoes.size() > MAXIMO_OPERACOES) {
+            throw new IllegalArgumentException("Lote deve ter no máximo " + MAXIMO_OPERACOES + " operações");
+        }
+
+        // Uma única leitura do relógio para o lote inteiro
+        LocalDateTime agora = LocalDateTime.now();
+        ResultadoOperacao[] resultados = new ResultadoOperacao[operacoes.size()];
+        List<ContatoStore.Escrita> escritas = new ArrayList<>(operacoes.size());
+        int[] indices = new int[operacoes.size()];
+        for (int i = 0; i < operacoes.size(); i++) {
+            Operacao operacao = operacoes.get(i);
+            String erro = validar(operacao);
+            if (erro != null) {
+                Tipo tipo = operacao != null ? operacao.tipo() : null;
+                resultados[i] = new ResultadoOperacao(i, tipo, tipo != null ? id(operacao) : null,
+                        HttpStatus.BAD_REQUEST.value(), erro, null);
+                continue;
+            }
+            indices[escritas.size()] = i;
+            escritas.add(escrita(operacao, agora));
+        }
+
+        boolean invalidas = escritas.size() < operacoes.size();
+        List<ContatoStore.Efeito> efeitos = invalidas && requisicao.atomico()
+                ? null : contatoService.aplicarLote(escritas, requisicao.atomico());
+        for (int j = 0; j < escritas.size(); j++) {
+            int i = indices[j];
+            resultados[i] = efeitos != null ? resultado(i, operacoes.get(i), efeitos.get(j))
+                    : cancelada(i, operacoes.get(i));
+        }
+
+        int sucessos = 0;
+        for (ResultadoOperacao resultado : resultados) {
+            if (resultado.status() < 300) {
+                sucessos++;
+            }
+        }
+        int falhas = resultados.length - sucessos;
+        boolean aplicado = !requisicao.atomico() || falhas == 0;
+        logger.info("Lote {}concluído: {} de {} operações aplicadas", requisicao.atomico() ? "atômico " : "",
+                sucessos, resultados.length);
+        return new Resultado(requisicao.atomico(), aplicado, sucessos, falhas, List.of(resultados));
+    }
+
+    private String validar(Operacao operacao) {
+        if (operacao == null || operacao.tipo() == null) {
+            return "Tipo da operação é obrigatório (CRIAR, ATUALIZAR ou REMOVER)";
+        }
+        if (operacao.tipo() != Tipo.CRIAR && operacao.id() == null) {
+            return "ID é obrigatório para " + operacao.tipo();
+        }
+        if (operacao.tipo() == Tipo.REMOVER) {
+            return null;
+        }
+        if (operacao.contato() == null) {
+            return "Contato é obrigatório para " + operacao.tipo();
+        }
+        List<String> mensagens = validator.validate(operacao.contato()).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .toList();
+        return mensagens.isEmpty() ? null : "Dados inválidos: " + String.join("; ", mensagens);
+    }
+
+    private static ContatoStore.Escrita escrita(Operacao operacao, LocalDateTime agora) {
+        Contato contato = operacao.contato();
+        return switch (operacao.tipo()) {
+            case CRIAR -> {
+                contato.setId(null);
+                contato.setVersao(0);
+                contato.setDataCriacao(agora);
+                contato.setDataAtualizacao(agora);
+                yield new ContatoStore.Inclusao(contato);
+            }
+            case ATUALIZAR -> new ContatoStore.Alteracao(operacao.id(), contato.getVersao(),
+                    registro -> registro.comDados(contato, agora));
+            case REMOVER -> new ContatoStore.Remocao(operacao.id());
+        };
+    }
+
+    private static ResultadoOperacao resultado(int indice, Operacao operacao, ContatoStore.Efeito efeito) {
+        return switch (efeito.situacao()) {
+            case APLICADA -> switch (operacao.tipo()) {
+                case CRIAR -> new ResultadoOperacao(indice, Tipo.CRIAR, efeito.atual().getId(),
+                        HttpStatus.CREATED.value(), "Contato criado com sucesso", efeito.atual());
+                case ATUALIZAR -> new ResultadoOperacao(indice, Tipo.ATUALIZAR, operacao.id(),
+                        HttpStatus.OK.value(), "Contato atualizado com sucesso", efeito.atual());
+                case REMOVER -> new ResultadoOperacao(indice, Tipo.REMOVER, operacao.id(),
+                        HttpStatus.OK.value(), "Contato removido com sucesso", null);
+            };
+            case NAO_ENCONTRADO -> new ResultadoOperacao(indice, operacao.tipo(), operacao.id(),
+                    HttpStatus.NOT_FOUND.value(), "Contato não encontrado", null);
+            case CONFLITO -> new ResultadoOperacao(indice, operacao.tipo(), operacao.id(),
+                    HttpStatus.CONFLICT.value(), ConflitoVersaoException.mensagem(operacao.id(),
+                            operacao.contato().getVersao(), efeito.anterior().getVersao()), null);
+            case CANCELADA -> cancelada(indice, operacao);
+        };
+    }
+
+    private static ResultadoOperacao cancelada(int indice, Operacao operacao) {
+        return new ResultadoOperacao(indice, operacao.tipo(), id(operacao), HttpStatus.FAILED_DEPENDENCY.value(),
+                "Não aplicada: outra operação do lote atômico falhou", null);
+    }
+
+    // O ID informado em uma inclusão é ignorado, então não aparece no resultado
+    private static Long id(Operacao operacao) {
+        return operacao.tipo() == Tipo.CRIAR ? null : operacao.id();
+    }
+}
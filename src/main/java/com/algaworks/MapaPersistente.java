@@ -0,0 +1,276 @@
+package com.algaworks;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Mapa persistente (imutável) de IDs não negativos para valores, organizado
+ * como uma trie de base 32 sobre os bits do ID. Cada alteração copia apenas
+ * o caminho da raiz até a folha (no máximo 13 nós, na prática 4 ou 5 para
+ * milhões de IDs) e compartilha todo o resto com a versão anterior, então
+ * versões antigas continuam válidas para quem ainda as lê.
+ *
+ * Como a trie segue os bits do ID, a iteração sai em ordem crescente de ID.
+ */
+final class MapaPersistente<V> implements Iterable<V> {
+
+    private static final int BITS = 5;
+    private static final int LARGURA = 1 << BITS;
+    private static final int MASCARA = LARGURA - 1;
+
+    private static final MapaPersistente<?> VAZIO = new MapaPersistente<>(new Object[LARGURA], 0, 0);
+
+    private final Object[] raiz;
+    private final int deslocamento;
+    private final int tamanho;
+
+    private MapaPersistente(Object[] raiz, int deslocamento, int tamanho) {
+        this.raiz = raiz;
+        this.deslocamento = deslocamento;
+        this.tamanho = tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> MapaPersistente<V> vazio() {
+        return (MapaPersistente<V>) VAZIO;
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long id) {
+        return (V) buscar(raiz, deslocamento, id);
+    }
+
+    /**
+     * Nova versão com o valor associado ao ID
+     */
+    MapaPersistente<V> com(long id, V valor) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID deve ser não negativo: " + id);
+        }
+        Object[] novaRaiz = raiz;
+        int novoDeslocamento = deslocamento;
+        while (!cabe(id, novoDeslocamento)) {
+            Object[] acima = new Object[LARGURA];
+            acima[0] = novaRaiz;
+            novaRaiz = acima;
+            novoDeslocamento += BITS;
+        }
+        boolean existia = get(id) != null;
+        return new MapaPersistente<>(inserir(novaRaiz, novoDeslocamento, id, valor, null), novoDeslocamento,
+                existia ? tamanho : tamanho + 1);
+    }
+
+    /**
+     * Nova versão com vários valores, cada um associado ao ID devolvido pela
+     * função. Os nós criados durante o lote são alterados no lugar, então
+     * cada nó é copiado no máximo uma vez em vez de uma vez por valor.
+     */
+    MapaPersistente<V> comTodos(Iterable<? extends V> valores, ToLongFunction<? super V> chave) {
+        Set<Object[]> novos = Collections.newSetFromMap(new IdentityHashMap<>());
+        Object[] novaRaiz = raiz;
+        int novoDeslocamento = deslocamento;
+        int novoTamanho = tamanho;
+        for (V valor : valores) {
+            long id = chave.applyAsLong(valor);
+            if (id < 0) {
+                throw new IllegalArgumentException("ID deve ser não negativo: " + id);
+            }
+            while (!cabe(id, novoDeslocamento)) {
+                Object[] acima = new Object[LARGURA];
+                acima[0] = novaRaiz;
+                novos.add(acima);
+                novaRaiz = acima;
+                novoDeslocamento += BITS;
+            }
+            if (buscar(novaRaiz, novoDeslocamento, id) == null) {
+                novoTamanho++;
+            }
+            novaRaiz = inserir(novaRaiz, novoDeslocamento, id, valor, novos);
+        }
+        return new MapaPersistente<>(novaRaiz, novoDeslocamento, novoTamanho);
+    }
+
+    /**
+     * Nova versão sem o ID; devolve a própria instância se ele não existe
+     */
+    MapaPersistente<V> sem(long id) {
+        if (get(id) == null) {
+            return this;
+        }
+        Object[] novaRaiz = remover(raiz, deslocamento, id);
+        return new MapaPersistente<>(novaRaiz != null ? novaRaiz : new Object[LARGURA], deslocamento, tamanho - 1);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return aPartirDe(0);
+    }
+
+    /**
+     * Itera em ordem crescente a partir do primeiro ID maior ou igual ao
+     * informado, visitando só os ramos à direita do ponto de partida
+     */
+    Iterator<V> aPartirDe(long idInicial) {
+        return new Iterador(Math.max(0, idInicial));
+    }
+
+    Stream<V> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), tamanho,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Stream em ordem crescente a partir do primeiro ID maior ou igual ao
+     * informado, para continuar uma paginação sem percorrer o que ficou antes
+     */
+    Stream<V> stream(long idInicial) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(aPartirDe(idInicial),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    private static boolean cabe(long id, int deslocamento) {
+        return id >= 0 && (deslocamento + BITS >= Long.SIZE || (id >>> (deslocamento + BITS)) == 0);
+    }
+
+    private static int indice(long id, int nivel) {
+        return (int) ((id >>> nivel) & MASCARA);
+    }
+
+    private static Object buscar(Object[] raiz, int deslocamento, long id) {
+        if (!cabe(id, deslocamento)) {
+            return null;
+        }
+        Object[] no = raiz;
+        for (int nivel = deslocamento; nivel > 0; nivel -= BITS) {
+            no = (Object[]) no[indice(id, nivel)];
+            if (no == null) {
+                return null;
+            }
+        }
+        return no[indice(id, 0)];
+    }
+
+    // Com o conjunto de nós novos de um lote, esses nós são reaproveitados sem cópia
+    private static Object[] inserir(Object[] no, int nivel, long id, Object valor, Set<Object[]> novos) {
+        Object[] copia = no;
+        if (novos == null || !novos.contains(no)) {
+            copia = no.clone();
+            if (novos != null) {
+                novos.add(copia);
+            }
+        }
+        int i = indice(id, nivel);
+        if (nivel == 0) {
+            copia[i] = valor;
+        } else {
+            Object[] filho = (Object[]) copia[i];
+            if (filho == null) {
+                filho = new Object[LARGURA];
+                if (novos != null) {
+                    novos.add(filho);
+                }
+            }
+            copia[i] = inserir(filho, nivel - BITS, id, valor, novos);
+        }
+        return copia;
+    }
+
+    // Devolve null quando o nó fica vazio, para podar ramos sem valores
+    private static Object[] remover(Object[] no, int nivel, long id) {
+        int i = indice(id, nivel);
+        Object[] copia = no.clone();
+        copia[i] = nivel == 0 ? null : remover((Object[]) no[i], nivel - BITS, id);
+        for (Object item : copia) {
+            if (item != null) {
+                return copia;
+            }
+        }
+        return null;
+    }
+
+    private final class Iterador implements Iterator<V> {
+
+        // Pilha de (nó, nível, próximo índice) da busca em profundidade
+        private final Deque<Object[]> nos = new ArrayDeque<>();
+        private final Deque<int[]> posicoes = new ArrayDeque<>();
+        private V proximo;
+
+        Iterador(long idInicial) {
+            if (!cabe(idInicial, deslocamento)) {
+                return;
+            }
+            // Desce pelo caminho do ID inicial; os ramos à esquerda são pulados
+            Object[] no = raiz;
+            for (int nivel = deslocamento; ; nivel -= BITS) {
+                int i = indice(idInicial, nivel);
+                nos.push(no);
+                posicoes.push(new int[] {nivel, i});
+                if (nivel == 0) {
+                    break;
+                }
+                Object filho = no[i];
+                if (filho == null) {
+                    break;
+                }
+                // O filho é visitado agora; na volta continua do próximo índice
+                posicoes.peek()[1] = i + 1;
+                no = (Object[]) filho;
+            }
+            avancar();
+        }
+
+        private void avancar() {
+            proximo = null;
+            while (!nos.isEmpty()) {
+                Object[] no = nos.peek();
+                int[] posicao = posicoes.peek();
+                if (posicao[1] >= LARGURA) {
+                    nos.pop();
+                    posicoes.pop();
+                    continue;
+                }
+                Object item = no[posicao[1]++];
+                if (item == null) {
+                    continue;
+                }
+                if (posicao[0] == 0) {
+                    @SuppressWarnings("unchecked")
+                    V valor = (V) item;
+                    proximo = valor;
+                    return;
+                }
+                nos.push((Object[]) item);
+                posicoes.push(new int[] {posicao[0] - BITS, 0});
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return proximo != null;
+        }
+
+        @Override
+        public V next() {
+            if (proximo == null) {
+                throw new NoSuchElementException();
+            }
+            V valor = proximo;
+            avancar();
+            return valor;
+        }
+    }
+}
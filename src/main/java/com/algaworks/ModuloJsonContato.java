@@ -0,0 +1,166 @@
+package com.algaworks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import org.springframework.stereotype.Component;
+
+/**
+ * Módulo Jackson que guarda o JSON de cada contato publicado no store e o
+ * reaproveita nas respostas seguintes. Sem ele, toda listagem percorre de
+ * novo os getters de cada contato, inclusive os calculados (idade, datas
+ * formatadas, validações). Com ele, o JSON de um contato é gerado uma vez e
+ * copiado para a saída como valor bruto dentro da resposta.
+ *
+ * O JSON fica na própria instância, e cada alteração no store produz uma
+ * instância nova, então o guardado nunca fica desatualizado. Como a idade e
+ * a validação da data de nascimento dependem da data corrente, o JSON vale
+ * só no dia em que foi gerado. Contatos com versão 0 ainda não foram
+ * publicados e podem mudar pelos setters, então passam direto pelo
+ * serializador padrão.
+ *
+ * O JSON também depende da configuração de quem serializa (views, estratégia
+ * de nomes, features) e dos recursos do gerador, então vale só para a mesma
+ * SerializationConfig e os mesmos recursos em que foi gerado; outra
+ * configuração gera e guarda o seu no lugar. Recursos que só tratam o destino
+ * (fechamento e flush) não contam. Geradores com pretty printer ou escapes
+ * próprios sempre passam pelo serializador padrão.
+ *
+ * Registrado no ObjectMapper do Spring por ser um bean do tipo Module.
+ */
+@Component
+public class ModuloJsonContato extends SimpleModule {
+
+    // Só gera o JSON de um contato; o gerador da resposta continua sendo o do ObjectMapper
+    private static final JsonFactory FABRICA = new JsonFactory();
+
+    // Recursos do gerador que não mudam o JSON gerado, só o tratamento da saída
+    private static final int RECURSOS_SEM_EFEITO = JsonGenerator.Feature.AUTO_CLOSE_TARGET.getMask()
+            | JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT.getMask()
+            | JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM.getMask();
+
+    // Data corrente e o instante em que ela vira, para não consultar o fuso a cada contato
+    private static volatile Hoje hoje = Hoje.agora();
+
+    private record Hoje(LocalDate dia, long ateMillis) {
+
+        static Hoje agora() {
+            ZoneId fuso = ZoneId.systemDefault();
+            LocalDate dia = LocalDate.now(fuso);
+            return new Hoje(dia, dia.plusDays(1).atStartOfDay(fuso).toInstant().toEpochMilli());
+        }
+    }
+
+    /**
+     * JSON de uma versão do contato, com o dia, a configuração e os recursos
+     * do gerador em que foi gerado
+     */
+    record Serializado(LocalDate dia, SerializationConfig config, int recursos, SerializedString json) {
+    }
+
+    public ModuloJsonContato() {
+        super("ModuloJsonContato");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription descricao,
+                    JsonSerializer<?> serializador) {
+                return descricao.getBeanClass() == Contato.class
+                        ? new SerializadorContato((JsonSerializer<Contato>) serializador) : serializador;
+            }
+        });
+    }
+
+    /**
+     * Data corrente usada nos JSON guardados; as ETags das respostas com
+     * contatos também dependem dela, já que idade e validação da data de
+     * nascimento mudam com o dia
+     */
+    static LocalDate hoje() {
+        Hoje atual = hoje;
+        if (System.currentTimeMillis() >= atual.ateMillis()) {
+            atual = Hoje.agora();
+            hoje = atual;
+        }
+        return atual.dia();
+    }
+
+    private static final class SerializadorContato extends StdSerializer<Contato>
+            implements ResolvableSerializer, ContextualSerializer {
+
+        private final JsonSerializer<Contato> padrao;
+
+        SerializadorContato(JsonSerializer<Contato> padrao) {
+            super(Contato.class);
+            this.padrao = padrao;
+        }
+
+        @Override
+        public void serialize(Contato contato, JsonGenerator gerador, SerializerProvider provider) throws IOException {
+            if (contato.getVersao() <= 0 || gerador.getPrettyPrinter() != null
+                    || gerador.getCharacterEscapes() != null) {
+                padrao.serialize(contato, gerador, provider);
+                return;
+            }
+            LocalDate dia = hoje();
+            SerializationConfig config = provider.getConfig();
+            int recursos = gerador.getFeatureMask() & ~RECURSOS_SEM_EFEITO;
+            Serializado serializado = contato.jsonSerializado();
+            if (serializado == null || !serializado.dia().equals(dia) || serializado.config() != config
+                    || serializado.recursos() != recursos) {
+                StringWriter json = new StringWriter(512);
+                try (JsonGenerator parcial = FABRICA.createGenerator(json)) {
+                    parcial.overrideStdFeatures(recursos, ~RECURSOS_SEM_EFEITO);
+                    padrao.serialize(contato, parcial, provider);
+                }
+                serializado = new Serializado(dia, config, recursos, new SerializedString(json.toString()));
+                // Já calcula os bytes UTF-8, que a SerializedString guarda para as próximas respostas
+                serializado.json().asUnquotedUTF8();
+                contato.guardarJsonSerializado(serializado);
+            }
+            gerador.writeRawValue(serializado.json());
+        }
+
+        @Override
+        public void serializeWithType(Contato contato, JsonGenerator gerador, SerializerProvider provider,
+                TypeSerializer tipo) throws IOException {
+            padrao.serializeWithType(contato, gerador, provider, tipo);
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (padrao instanceof ResolvableSerializer resolvivel) {
+                resolvivel.resolve(provider);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty propriedade)
+                throws JsonMappingException {
+            if (padrao instanceof ContextualSerializer contextual) {
+                JsonSerializer<?> contextualizado = contextual.createContextual(provider, propriedade);
+                if (contextualizado != padrao) {
+                    return new SerializadorContato((JsonSerializer<Contato>) contextualizado);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.algaworks;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Formas normalizadas usadas pela busca: textos em minúsculas e sem acentos,
+ * telefones reduzidos aos dígitos. O contato guarda as formas dos seus campos
+ * e a consulta normaliza o texto buscado uma única vez, então a comparação é
+ * um {@code contains} direto, sem criar strings por contato.
+ */
+final class NormalizadorTexto {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    private NormalizadorTexto() {
+    }
+
+    /**
+     * Texto em minúsculas e sem acentos ("João" vira "joao"). Textos ASCII já
+     * em minúsculas são devolvidos sem cópia.
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        boolean ascii = true;
+        boolean minusculo = true;
+        for (int i = 0; i < texto.length() && ascii; i++) {
+            char c = texto.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+            } else if (c >= 'A' && c <= 'Z') {
+                minusculo = false;
+            }
+        }
+        if (ascii) {
+            return minusculo ? texto : texto.toLowerCase(Locale.ROOT);
+        }
+        return MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Apenas os dígitos do texto; sem cópia quando já não há outros caracteres
+     */
+    static String digitos(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        int i = 0;
+        while (i < texto.length() && texto.charAt(i) >= '0' && texto.charAt(i) <= '9') {
+            i++;
+        }
+        if (i == texto.length()) {
+            return texto;
+        }
+        StringBuilder digitos = new StringBuilder(texto.length());
+        digitos.append(texto, 0, i);
+        for (; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitos.append(c);
+            }
+        }
+        return digitos.toString();
+    }
+
+    /**
+     * Dígitos de um texto de busca que só tem caracteres de telefone (dígitos,
+     * espaços, parênteses, hífen, ponto e "+"), ou null quando o texto não se
+     * parece com um telefone. Assim "rua 1" não casa com todo telefone que
+     * tenha o dígito 1.
+     */
+    static String digitosDeTelefone(String texto) {
+        boolean temDigito = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c >= '0' && c <= '9') {
+                temDigito = true;
+            } else if (c != ' ' && c != '(' && c != ')' && c != '-' && c != '.' && c != '+') {
+                return null;
+            }
+        }
+        return temDigito ? digitos(texto) : null;
+    }
+}
@@ -0,0 +1,62 @@
+package com.algaworks;
+
+/**
+ * Ordenação pedida para uma listagem, no formato {@code campo[,asc|desc]}
+ * (por exemplo {@code nome} ou {@code dataNascimento,desc}). Sem ordenação a
+ * listagem sai em ordem de ID.
+ */
+public record Ordenacao(Campo campo, boolean decrescente) {
+
+    /**
+     * Campos ordenáveis, cada um com um índice ordenado no
+     * {@link IndiceOrdenacao}
+     */
+    public enum Campo {
+        NOME("nome"),
+        DATA_NASCIMENTO("dataNascimento"),
+        DATA_CRIACAO("dataCriacao"),
+        DATA_ATUALIZACAO("dataAtualizacao");
+
+        private final String parametro;
+
+        Campo(String parametro) {
+            this.parametro = parametro;
+        }
+
+        public String getParametro() {
+            return parametro;
+        }
+    }
+
+    /**
+     * Interpreta o parâmetro de ordenação; nulo ou vazio significa ordem de ID
+     *
+     * @throws IllegalArgumentException se o campo ou a direção forem desconhecidos
+     */
+    public static Ordenacao de(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        String[] partes = valor.split(",", -1);
+        if (partes.length > 2) {
+            throw new IllegalArgumentException("Ordenação inválida: " + valor);
+        }
+        boolean decrescente = false;
+        if (partes.length == 2) {
+            String direcao = partes[1].trim();
+            if (direcao.equalsIgnoreCase("desc")) {
+                decrescente = true;
+            } else if (!direcao.equalsIgnoreCase("asc")) {
+                throw new IllegalArgumentException("Direção da ordenação deve ser asc ou desc: " + direcao);
+            }
+        }
+        String nome = partes[0].trim();
+        for (Campo campo : Campo.values()) {
+            if (campo.parametro.equalsIgnoreCase(nome)) {
+                return new Ordenacao(campo, decrescente);
+            }
+        }
+        throw new IllegalArgumentException(
+                "Ordenação deve ser por nome, dataNascimento, dataCriacao ou dataAtualizacao: " + nome);
+    }
+}
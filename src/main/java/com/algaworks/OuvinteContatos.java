@@ -0,0 +1,29 @@
+package com.algaworks;
+
+/**
+ * Recebe as escritas publicadas pelo {@link ContatoStore}. Diferente de um
+ * {@link IndiceContatos}, o ouvinte não é populado com os contatos já
+ * existentes ao ser registrado: só enxerga as escritas posteriores.
+ *
+ * A notificação acontece depois da publicação, ainda dentro da seção que
+ * serializa as escritas do mesmo ID, então as escritas de um contato chegam
+ * na ordem em que foram publicadas.
+ */
+public interface OuvinteContatos {
+
+    /**
+     * @param anterior versão substituída, ou null em uma inclusão
+     * @param atual    versão publicada, ou null em uma remoção
+     * @param versao   versão do store em que a escrita foi publicada
+     */
+    void contatoAlterado(Contato anterior, Contato atual, long versao);
+
+    /**
+     * Chamado na mesma thread ao fim de cada operação de escrita, depois de
+     * liberados os locks do store e entregues todas as notificações dela.
+     * Permite esperar por trabalho assíncrono iniciado nas notificações sem
+     * bloquear as demais escritas.
+     */
+    default void escritaConcluida() {
+    }
+}
@@ -0,0 +1,90 @@
+package com.algaworks;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Uma página de uma listagem em ordem de ID, com o cursor da próxima. A
+ * paginação é por chave: o cursor guarda o último ID entregue e a página
+ * seguinte começa no primeiro ID maior que ele, buscado direto no mapa ou
+ * no índice, então a página N custa o mesmo que a primeira.
+ *
+ * O cursor é opaco para o cliente (Base64 sem padding) e não depende da
+ * listagem: vale para qualquer consulta ordenada por ID. Listagens com
+ * {@link Ordenacao} usam o cursor do {@link IndiceOrdenacao}.
+ */
+public record Pagina<T>(List<T> itens, String proximo) {
+
+    public static final int LIMITE_PADRAO = 100;
+
+    public static final int LIMITE_MAXIMO = 1_000;
+
+    // Antes de qualquer ID, para começar da primeira página
+    public static final long INICIO = Long.MIN_VALUE;
+
+    /**
+     * Lê até {@code limite} itens do stream, que deve estar em ordem de ID e
+     * já começar depois do cursor. Um item a mais é lido só para saber se
+     * existe próxima página.
+     */
+    public static Pagina<Contato> de(Stream<Contato> contatos, int limite) {
+        return de(contatos, limite, contato -> cursor(contato.getId()));
+    }
+
+    /**
+     * Como {@link #de(Stream, int)}, para streams em outra ordem: o cursor
+     * da próxima página é gerado a partir do último item entregue
+     */
+    public static <T> Pagina<T> de(Stream<T> itens, int limite, Function<T, String> cursor) {
+        List<T> lidos = itens.limit(limite + 1L).collect(Collectors.toList());
+        if (lidos.size() <= limite) {
+            return new Pagina<>(lidos, null);
+        }
+        lidos.remove(limite);
+        return new Pagina<>(lidos, cursor.apply(lidos.get(limite - 1)));
+    }
+
+    /**
+     * Limite de itens por página validado, com o padrão quando não informado
+     *
+     * @throws IllegalArgumentException se o limite for menor que 1
+     */
+    public static int limite(Integer limite) {
+        if (limite == null) {
+            return LIMITE_PADRAO;
+        }
+        if (limite < 1) {
+            throw new IllegalArgumentException("Limite deve ser maior que zero");
+        }
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+
+    public static String cursor(long ultimoId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(ultimoId).array());
+    }
+
+    /**
+     * Último ID entregue segundo o cursor, ou {@link #INICIO} sem cursor
+     *
+     * @throws IllegalArgumentException se o cursor não foi gerado por esta API
+     */
+    public static long aposId(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return INICIO;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+        if (bytes.length != Long.BYTES) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+}
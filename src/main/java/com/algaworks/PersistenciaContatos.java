@@ -0,0 +1,16 @@
+package com.algaworks;
+
+import java.util.List;
+
+/**
+ * Persistência durável dos contatos. O {@link ContatoStore} continua sendo o
+ * caminho de leitura: a persistência recebe as escritas como ouvinte e só é
+ * lida na inicialização, para popular o store.
+ */
+public interface PersistenciaContatos extends OuvinteContatos {
+
+    /**
+     * Contatos persistidos, em ordem de ID
+     */
+    List<Contato> carregar();
+}
@@ -0,0 +1,185 @@
+package com.algaworks;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persistência write-behind no H2 pelo {@link ContatoRepository}. As escritas
+ * do store entram em uma fila coalescida por ID (só o último estado de cada
+ * contato é gravado) e uma thread de fundo grava a fila em lotes, usando o
+ * batching JDBC do Hibernate. A latência das escritas continua a da memória;
+ * no desligamento a fila é gravada por completo.
+ */
+@Component
+@ConditionalOnProperty(name = "contatos.persistencia.modo", havingValue = "jpa", matchIfMissing = true)
+public class PersistenciaJpa implements PersistenciaContatos {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistenciaJpa.class);
+
+    private final ContatoRepository repository;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transacao;
+
+    private final long intervaloMs;
+
+    private final int tamanhoLote;
+
+    // Último estado pendente por ID; contato nulo indica remoção
+    private final Map<Long, Pendencia> pendentes = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean gravacaoAgendada = new AtomicBoolean();
+
+    private final Object gravacao = new Object();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "contatos-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Pendencia(Contato contato) {
+    }
+
+    public PersistenciaJpa(ContatoRepository repository, EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Value("${contatos.persistencia.intervalo-ms:200}") long intervaloMs,
+            @Value("${contatos.persistencia.lote:500}") int tamanhoLote) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.intervaloMs = intervaloMs;
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        executor.scheduleWithFixedDelay(this::gravarPendentes, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        logger.info("Persistência write-behind iniciada (intervalo {} ms, lote {})", intervaloMs, tamanhoLote);
+    }
+
+    @Override
+    public List<Contato> carregar() {
+        return repository.findAll(Sort.by("id"));
+    }
+
+    @Override
+    public void contatoAlterado(Contato anterior, Contato atual, long versao) {
+        Long id = atual != null ? atual.getId() : anterior.getId();
+        pendentes.put(id, new Pendencia(atual));
+        // Fila cheia antecipa a gravação em vez de esperar o intervalo
+        if (pendentes.size() >= tamanhoLote && !executor.isShutdown()
+                && gravacaoAgendada.compareAndSet(false, true)) {
+            executor.execute(this::gravarPendentes);
+        }
+    }
+
+    // Contatos com escrita ainda não gravada no banco
+    int pendentes() {
+        return pendentes.size();
+    }
+
+    /**
+     * Grava tudo o que está pendente. Chamado pela thread de fundo e no
+     * desligamento; gravações nunca rodam em paralelo.
+     */
+    public void gravarPendentes() {
+        synchronized (gravacao) {
+            gravacaoAgendada.set(false);
+            while (!pendentes.isEmpty()) {
+                Map<Long, Pendencia> lote = new LinkedHashMap<>();
+                for (Long id : pendentes.keySet()) {
+                    Pendencia pendencia = pendentes.remove(id);
+                    if (pendencia != null) {
+                        lote.put(id, pendencia);
+                    }
+                    if (lote.size() == tamanhoLote) {
+                        break;
+                    }
+                }
+                try {
+                    transacao.executeWithoutResult(status -> gravarLote(lote));
+                    logger.debug("Lote de {} contatos gravado no banco", lote.size());
+                } catch (RuntimeException e) {
+                    // Devolve o lote sem sobrescrever escritas mais novas e tenta no próximo ciclo
+                    lote.forEach(pendentes::putIfAbsent);
+                    logger.error("Erro ao gravar lote de {} contatos: {}", lote.size(), e.getMessage(), e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void gravarLote(Map<Long, Pendencia> lote) {
+        List<Long> remover = new ArrayList<>();
+        List<Contato> salvar = new ArrayList<>();
+        lote.forEach((id, pendencia) -> {
+            if (pendencia.contato() == null) {
+                remover.add(id);
+            } else {
+                // Cópia destacada: a instância publicada no store não é gerenciada pelo JPA
+                Contato contato = pendencia.contato();
+                salvar.add(new Contato(ContatoRegistro.de(contato), contato.getVersao()));
+            }
+        });
+
+        if (!salvar.isEmpty()) {
+            // Uma única consulta carrega os existentes no contexto; assim o merge
+            // não consulta linha a linha e inserts/updates saem em lotes JDBC
+            Set<Long> existentes = new HashSet<>();
+            repository.findAllById(salvar.stream().map(Contato::getId).toList())
+                    .forEach(contato -> existentes.add(contato.getId()));
+            List<Contato> atualizar = new ArrayList<>();
+            for (Contato contato : salvar) {
+                if (existentes.contains(contato.getId())) {
+                    atualizar.add(contato);
+                } else {
+                    entityManager.persist(contato);
+                }
+            }
+            repository.saveAll(atualizar);
+        }
+        if (!remover.isEmpty()) {
+            repository.deleteAllByIdInBatch(remover);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @PreDestroy
+    void encerrar() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        gravarPendentes();
+        if (pendentes.isEmpty()) {
+            logger.info("Persistência write-behind encerrada com todas as escritas gravadas");
+        } else {
+            logger.error("Persistência write-behind encerrada com {} escritas não gravadas", pendentes.size());
+        }
+    }
+}
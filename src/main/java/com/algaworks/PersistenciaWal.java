@@ -0,0 +1,428 @@
+package com.algaworks;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Persistência por log de escrita (WAL) com group commit e snapshots.
+ *
+ * Cada escrita do store vira um registro binário ({@link CodecContato}) com
+ * tamanho e CRC32 na frente, anexado ao segmento de log atual. Uma única
+ * thread grava os registros acumulados e faz um só {@code force} por grupo,
+ * liberando juntas todas as escritas que esperavam por ele.
+ *
+ * A cada {@code registros-por-snapshot} registros o log passa para um novo
+ * segmento e o snapshot MVCC do store é gravado em arquivo; os segmentos
+ * anteriores ao novo são então apagados. Na inicialização o snapshot é lido
+ * por {@link MappedByteBuffer} e os segmentos seguintes são reaplicados,
+ * parando no primeiro registro incompleto ou corrompido.
+ *
+ * Se a gravação de um grupo falhar, parte dele pode ter chegado ao segmento.
+ * Como a recuperação para no primeiro registro inválido, nada mais é anexado
+ * a esse segmento: o log passa para um novo e grava na hora um snapshot do
+ * store, que já contém as escritas do grupo, e só então o grupo é liberado.
+ * Se isso também falhar, o log fica indisponível e as escritas seguintes
+ * falham logo, sem esperar pelo disco.
+ */
+@Component
+@ConditionalOnProperty(name = "contatos.persistencia.modo", havingValue = "wal")
+public class PersistenciaWal implements PersistenciaContatos {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistenciaWal.class);
+
+    private static final int MAGICO = 0x43545331; // "CTS1"
+    private static final String SNAPSHOT = "contatos.snapshot";
+    private static final String PREFIXO_SEGMENTO = "contatos-";
+    private static final String SUFIXO_SEGMENTO = ".wal";
+
+    private static final byte GRAVACAO = 1;
+    private static final byte REMOCAO = 2;
+
+    private final ContatoStore store;
+
+    private final Path diretorio;
+
+    private final long registrosPorSnapshot;
+
+    private final BlockingQueue<Registro> fila = new LinkedBlockingQueue<>();
+
+    // Leitura para enfileirar; escrita só para encerrar, garantindo que nada entra depois
+    private final ReentrantReadWriteLock encerramento = new ReentrantReadWriteLock();
+
+    private final ExecutorService snapshots = Executors.newSingleThreadExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "contatos-wal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ThreadLocal<CompletableFuture<Void>> ultimoRegistro = new ThreadLocal<>();
+
+    private Thread escritor;
+
+    private volatile boolean ativo;
+
+    // Falha que deixou o log sem garantia de durabilidade; depois dela nada mais é gravado
+    private volatile IOException falha;
+
+    // Acessados só pela thread escritora (e no encerramento, depois dela)
+    private FileChannel segmento;
+    private long numeroSegmento;
+    private long registrosDesdeSnapshot;
+
+    private record Registro(ByteBuffer dados, CompletableFuture<Void> gravado) {
+    }
+
+    public PersistenciaWal(ContatoStore store,
+            @Value("${contatos.persistencia.diretorio:data}") String diretorio,
+            @Value("${contatos.persistencia.wal.registros-por-snapshot:100000}") long registrosPorSnapshot) {
+        this.store = store;
+        this.diretorio = Paths.get(diretorio);
+        this.registrosPorSnapshot = registrosPorSnapshot;
+    }
+
+    @PostConstruct
+    void iniciar() throws IOException {
+        Files.createDirectories(diretorio);
+        List<Long> existentes = segmentos();
+        numeroSegmento = existentes.isEmpty() ? 1 : existentes.get(existentes.size() - 1) + 1;
+        segmento = abrirSegmento(numeroSegmento);
+        ativo = true;
+        escritor = new Thread(this::gravarGrupos, "contatos-wal");
+        escritor.setDaemon(true);
+        escritor.start();
+        logger.info("Log de escrita iniciado em {} (segmento {})", diretorio.toAbsolutePath(), numeroSegmento);
+    }
+
+    @Override
+    public List<Contato> carregar() {
+        long inicio = System.nanoTime();
+        Map<Long, Contato> contatos = new HashMap<>();
+        try {
+            long primeiroSegmento = lerSnapshot(contatos);
+            int carregadosDoSnapshot = contatos.size();
+            int reaplicados = 0;
+            for (long numero : segmentos()) {
+                if (numero >= primeiroSegmento && numero < numeroSegmento) {
+                    reaplicados += reaplicar(numero, contatos);
+                }
+            }
+            logger.info("Recuperados {} contatos ({} do snapshot, {} registros do log) em {} ms",
+                    contatos.size(), carregadosDoSnapshot, reaplicados, (System.nanoTime() - inicio) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao recuperar contatos de " + diretorio, e);
+        }
+        List<Contato> resultado = new ArrayList<>(contatos.values());
+        resultado.sort(Comparator.comparing(Contato::getId));
+        return resultado;
+    }
+
+    /**
+     * Anexa a escrita ao log; a espera pelo group commit fica para
+     * {@link #escritaConcluida()}, fora dos locks do store
+     */
+    @Override
+    public void contatoAlterado(Contato anterior, Contato atual, long versao) {
+        Registro registro = new Registro(codificar(anterior, atual), new CompletableFuture<>());
+        if (falha != null) {
+            // Sem lançar aqui, dentro dos locks do store: a falha aparece em escritaConcluida
+            registro.gravado().completeExceptionally(falha);
+            ultimoRegistro.set(registro.gravado());
+            return;
+        }
+        encerramento.readLock().lock();
+        try {
+            if (!ativo) {
+                throw new IllegalStateException("Log de escrita encerrado");
+            }
+            fila.add(registro);
+        } finally {
+            encerramento.readLock().unlock();
+        }
+        ultimoRegistro.set(registro.gravado());
+    }
+
+    /**
+     * Espera o group commit do último registro da operação. Como os grupos
+     * são gravados em ordem, os registros anteriores também estão duráveis.
+     */
+    @Override
+    public void escritaConcluida() {
+        CompletableFuture<Void> gravado = ultimoRegistro.get();
+        if (gravado == null) {
+            return;
+        }
+        ultimoRegistro.remove();
+        try {
+            gravado.join();
+        } catch (CompletionException e) {
+            throw new UncheckedIOException("Erro ao gravar no log de escrita", (IOException) e.getCause());
+        }
+    }
+
+    private ByteBuffer codificar(Contato anterior, Contato atual) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream saida = new DataOutputStream(bytes);
+            if (atual != null) {
+                saida.writeByte(GRAVACAO);
+                CodecContato.escrever(saida, atual);
+            } else {
+                saida.writeByte(REMOCAO);
+                saida.writeLong(anterior.getId());
+            }
+            byte[] dados = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(dados);
+            return ByteBuffer.allocate(8 + dados.length)
+                    .putInt(dados.length)
+                    .putInt((int) crc.getValue())
+                    .put(dados)
+                    .flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Laço da thread escritora: um write e um force por grupo de registros
+    private void gravarGrupos() {
+        List<Registro> grupo = new ArrayList<>();
+        while (true) {
+            Registro primeiro;
+            try {
+                primeiro = fila.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (primeiro == null) {
+                if (!ativo && fila.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            grupo.add(primeiro);
+            fila.drainTo(grupo);
+            if (falha != null) {
+                grupo.forEach(registro -> registro.gravado().completeExceptionally(falha));
+                grupo.clear();
+                continue;
+            }
+            try {
+                ByteBuffer[] buffers = grupo.stream().map(Registro::dados).toArray(ByteBuffer[]::new);
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    segmento.write(buffers);
+                }
+                segmento.force(false);
+                grupo.forEach(registro -> registro.gravado().complete(null));
+            } catch (IOException e) {
+                logger.error("Erro ao gravar grupo de {} registros no log: {}", grupo.size(), e.getMessage(), e);
+                recuperarFalha(grupo, e);
+                grupo.clear();
+                continue;
+            }
+            registrosDesdeSnapshot += grupo.size();
+            grupo.clear();
+            if (registrosDesdeSnapshot >= registrosPorSnapshot) {
+                try {
+                    long primeiroSegmento = rotacionar();
+                    snapshots.execute(() -> gravarSnapshotComSeguranca(primeiroSegmento));
+                } catch (IOException e) {
+                    logger.error("Erro ao abrir novo segmento do log: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    // O segmento atual pode ter parte do grupo que falhou; um snapshot tirado
+    // depois da rotação contém o grupo e dispensa reaplicar esse segmento
+    private void recuperarFalha(List<Registro> grupo, IOException erro) {
+        try {
+            long primeiroSegmento = rotacionar();
+            // No executor de snapshots, para não disputar o arquivo com um snapshot periódico
+            snapshots.submit(() -> {
+                gravarSnapshot(primeiroSegmento);
+                return null;
+            }).get();
+            logger.warn("Log recuperado da falha no segmento {} com um snapshot", primeiroSegmento - 1);
+            grupo.forEach(registro -> registro.gravado().complete(null));
+        } catch (Exception e) {
+            falha = erro;
+            logger.error("Log de escrita indisponível; as escritas seguintes vão falhar: {}", e.getMessage(), e);
+            grupo.forEach(registro -> registro.gravado().completeExceptionally(erro));
+        }
+    }
+
+    // Tudo o que está nos segmentos anteriores já foi publicado no store, então
+    // um snapshot tirado depois da rotação os contém
+    private long rotacionar() throws IOException {
+        segmento.close();
+        numeroSegmento++;
+        segmento = abrirSegmento(numeroSegmento);
+        registrosDesdeSnapshot = 0;
+        return numeroSegmento;
+    }
+
+    private void gravarSnapshotComSeguranca(long primeiroSegmento) {
+        try {
+            gravarSnapshot(primeiroSegmento);
+        } catch (IOException e) {
+            logger.error("Erro ao gravar snapshot dos contatos: {}", e.getMessage(), e);
+        }
+    }
+
+    private void gravarSnapshot(long primeiroSegmento) throws IOException {
+        long inicio = System.nanoTime();
+        ContatoStore.Snapshot snapshot = store.snapshot();
+        Path temporario = diretorio.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream saida = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 20));
+            saida.writeInt(MAGICO);
+            saida.writeLong(primeiroSegmento);
+            saida.writeInt(snapshot.tamanho());
+            for (Contato contato : (Iterable<Contato>) snapshot.stream()::iterator) {
+                CodecContato.escrever(saida, contato);
+            }
+            saida.flush();
+            canal.force(true);
+        }
+        // A troca atômica garante que sempre há um snapshot completo em disco
+        Files.move(temporario, diretorio.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        for (long numero : segmentos()) {
+            if (numero < primeiroSegmento) {
+                Files.deleteIfExists(caminhoSegmento(numero));
+            }
+        }
+        logger.info("Snapshot com {} contatos gravado em {} ms", snapshot.tamanho(),
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private long lerSnapshot(Map<Long, Contato> contatos) throws IOException {
+        Path arquivo = diretorio.resolve(SNAPSHOT);
+        if (!Files.exists(arquivo)) {
+            return 0;
+        }
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot maior que 2 GB não é suportado: " + arquivo);
+            }
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (buffer.getInt() != MAGICO) {
+                throw new IOException("Arquivo de snapshot inválido: " + arquivo);
+            }
+            long primeiroSegmento = buffer.getLong();
+            int quantidade = buffer.getInt();
+            for (int i = 0; i < quantidade; i++) {
+                Contato contato = CodecContato.ler(buffer);
+                contatos.put(contato.getId(), contato);
+            }
+            return primeiroSegmento;
+        }
+    }
+
+    private int reaplicar(long numero, Map<Long, Contato> contatos) throws IOException {
+        int reaplicados = 0;
+        try (FileChannel canal = FileChannel.open(caminhoSegmento(numero), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= 8) {
+                int tamanho = buffer.getInt();
+                int esperado = buffer.getInt();
+                if (tamanho <= 0 || tamanho > buffer.remaining()) {
+                    logger.warn("Registro incompleto no segmento {} ignorado", numero);
+                    break;
+                }
+                ByteBuffer dados = buffer.slice(buffer.position(), tamanho);
+                crc.reset();
+                crc.update(dados.duplicate());
+                if ((int) crc.getValue() != esperado) {
+                    logger.warn("Registro corrompido no segmento {} ignorado", numero);
+                    break;
+                }
+                buffer.position(buffer.position() + tamanho);
+                if (dados.get() == GRAVACAO) {
+                    Contato contato = CodecContato.ler(dados);
+                    contatos.put(contato.getId(), contato);
+                } else {
+                    contatos.remove(dados.getLong());
+                }
+                reaplicados++;
+            }
+        }
+        return reaplicados;
+    }
+
+    private List<Long> segmentos() throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos.map(arquivo -> arquivo.getFileName().toString())
+                    .filter(nome -> nome.startsWith(PREFIXO_SEGMENTO) && nome.endsWith(SUFIXO_SEGMENTO))
+                    .map(nome -> Long.parseLong(nome.substring(PREFIXO_SEGMENTO.length(),
+                            nome.length() - SUFIXO_SEGMENTO.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path caminhoSegmento(long numero) {
+        return diretorio.resolve(String.format("%s%020d%s", PREFIXO_SEGMENTO, numero, SUFIXO_SEGMENTO));
+    }
+
+    // Sobrescrito nos testes para simular falhas de disco
+    FileChannel abrirSegmento(long numero) throws IOException {
+        return FileChannel.open(caminhoSegmento(numero), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @PreDestroy
+    void encerrar() throws IOException, InterruptedException {
+        encerramento.writeLock().lock();
+        try {
+            ativo = false;
+        } finally {
+            encerramento.writeLock().unlock();
+        }
+        escritor.join();
+        snapshots.shutdown();
+        snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        // Snapshot final: a próxima inicialização não precisa reaplicar o log
+        gravarSnapshot(rotacionar());
+        segmento.close();
+        logger.info("Log de escrita encerrado");
+    }
+}
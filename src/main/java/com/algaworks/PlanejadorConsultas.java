@@ -0,0 +1,191 @@
+package com.algaworks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Planejador de consultas baseado em custo. Compila um {@link ContatoFiltro}
+ * uma única vez: normaliza os textos de busca (sem acentos nem maiúsculas,
+ * telefone só com dígitos) para comparar com as formas guardadas em cada
+ * {@link Contato}, gera um predicado especializado por critério e escolhe
+ * como caminho de acesso o índice com a menor estimativa de candidatos (ID,
+ * categoria, favoritos, intervalo de nascimento ou trigramas), caindo na
+ * varredura do armazenamento colunar quando nenhum índice ajuda.
+ */
+public class PlanejadorConsultas {
+
+    private final ContatoStore store;
+    private final IndiceCategoria indiceCategoria;
+    private final IndiceFavoritos indiceFavoritos;
+    private final IndiceDataNascimento indiceDataNascimento;
+    private final IndiceTrigramas indiceTrigramas;
+    private final EstatisticasContatos estatisticas;
+    private final ArmazenamentoColunar colunar;
+
+    public PlanejadorConsultas(ContatoStore store, IndiceCategoria indiceCategoria,
+            IndiceFavoritos indiceFavoritos, IndiceDataNascimento indiceDataNascimento,
+            IndiceTrigramas indiceTrigramas, EstatisticasContatos estatisticas,
+            ArmazenamentoColunar colunar) {
+        this.store = store;
+        this.indiceCategoria = indiceCategoria;
+        this.indiceFavoritos = indiceFavoritos;
+        this.indiceDataNascimento = indiceDataNascimento;
+        this.indiceTrigramas = indiceTrigramas;
+        this.estatisticas = estatisticas;
+        this.colunar = colunar;
+    }
+
+    public PlanoConsulta planejar(ContatoFiltro filtro) {
+        long total = estatisticas.total();
+        ArmazenamentoColunar.Criterios criteriosColunares = criteriosColunares(filtro);
+        Candidato melhor = new Candidato(PlanoConsulta.Acesso.VARREDURA, "varredura colunar", total,
+                aposId -> store.buscarTodos(apos(colunar.filtrar(criteriosColunares), aposId)));
+        List<PlanoConsulta.Criterio> criterios = new ArrayList<>();
+
+        if (filtro.getId().isPresent()) {
+            Long id = filtro.getId().get();
+            criterios.add(new PlanoConsulta.Criterio("id = " + id, 0,
+                    contato -> id.equals(contato.getId())));
+            melhor = melhor.ou(new Candidato(PlanoConsulta.Acesso.ID, "id = " + id, 1,
+                    aposId -> id > aposId ? store.buscar(id).stream() : Stream.empty()));
+        }
+
+        if (filtro.getCategoria().isPresent()) {
+            Categoria categoria = filtro.getCategoria().get();
+            criterios.add(new PlanoConsulta.Criterio("categoria = " + categoria.name(), 1,
+                    contato -> contato.getCategoria() == categoria));
+            melhor = melhor.ou(new Candidato(PlanoConsulta.Acesso.CATEGORIA, categoria.name(),
+                    estatisticas.contar(categoria),
+                    aposId -> store.buscarTodos(indiceCategoria.ids(categoria).tailSet(aposId, false))));
+        }
+
+        if (filtro.getFavorito().isPresent()) {
+            boolean favorito = filtro.getFavorito().get();
+            criterios.add(new PlanoConsulta.Criterio("favorito = " + favorito, 1,
+                    contato -> contato.isFavorito() == favorito));
+            // Só há índice para os favoritos; não favoritos exigem varredura
+            if (favorito) {
+                melhor = melhor.ou(new Candidato(PlanoConsulta.Acesso.FAVORITOS, "favorito = true",
+                        estatisticas.favoritos(),
+                        aposId -> store.buscarTodos(indiceFavoritos.ids().tailSet(aposId, false))));
+            }
+        }
+
+        LocalDate inicio = filtro.getDataNascimentoInicio().orElse(null);
+        LocalDate fim = filtro.getDataNascimentoFim().orElse(null);
+        if (inicio != null || fim != null) {
+            if (inicio != null) {
+                criterios.add(new PlanoConsulta.Criterio("dataNascimento >= " + inicio, 2,
+                        contato -> contato.getDataNascimento() != null
+                        && !contato.getDataNascimento().isBefore(inicio)));
+            }
+            if (fim != null) {
+                criterios.add(new PlanoConsulta.Criterio("dataNascimento <= " + fim, 2,
+                        contato -> contato.getDataNascimento() != null
+                        && !contato.getDataNascimento().isAfter(fim)));
+            }
+            // A contagem para assim que supera o melhor caminho já encontrado
+            long estimativa = indiceDataNascimento.contar(inicio, fim, melhor.estimativa() + 1);
+            melhor = melhor.ou(new Candidato(PlanoConsulta.Acesso.DATA_NASCIMENTO,
+                    (inicio != null ? inicio : "*") + " .. " + (fim != null ? fim : "*"), estimativa,
+                    aposId -> store.buscarTodos(apos(indiceDataNascimento.ids(inicio, fim), aposId))));
+        }
+
+        if (preenchido(filtro.getTelefone().orElse(null))) {
+            String telefoneBusca = filtro.getTelefone().get();
+            String digitos = NormalizadorTexto.digitosDeTelefone(telefoneBusca);
+            if (digitos != null) {
+                criterios.add(new PlanoConsulta.Criterio("telefone contém '" + digitos + "'", 5,
+                        contato -> contato.getTelefone() != null && contato.getTelefoneDigitos().contains(digitos)));
+                melhor = melhor.ou(candidatoTexto("telefone", digitos));
+            } else {
+                // Sem forma de telefone, compara como digitado e sem índice
+                criterios.add(new PlanoConsulta.Criterio("telefone contém '" + telefoneBusca + "'", 5,
+                        contato -> contato.getTelefone() != null && contato.getTelefone().contains(telefoneBusca)));
+            }
+        }
+
+        if (preenchido(filtro.getEmail().orElse(null))) {
+            String emailBusca = NormalizadorTexto.normalizar(filtro.getEmail().get());
+            criterios.add(new PlanoConsulta.Criterio("email contém '" + emailBusca + "'", 10,
+                    contato -> contato.getEmail() != null && contato.getEmailBusca().contains(emailBusca)));
+            melhor = melhor.ou(candidatoTexto("email", emailBusca));
+        }
+
+        if (preenchido(filtro.getNome().orElse(null))) {
+            String nomeBusca = NormalizadorTexto.normalizar(filtro.getNome().get());
+            criterios.add(new PlanoConsulta.Criterio("nome contém '" + nomeBusca + "'", 10,
+                    contato -> contato.getNomeBusca().contains(nomeBusca)));
+            melhor = melhor.ou(candidatoTexto("nome", nomeBusca));
+        }
+
+        if (criterios.isEmpty()) {
+            // Sem critérios, percorre o snapshot direto, sem passar pelo colunar
+            melhor = new Candidato(PlanoConsulta.Acesso.VARREDURA, "varredura completa", total, store::streamApos);
+        }
+
+        criterios.sort(Comparator.comparingInt(PlanoConsulta.Criterio::custo));
+        return new PlanoConsulta(melhor.acesso(), melhor.detalhe(), melhor.estimativa(), total,
+                melhor.origem(), criterios);
+    }
+
+    private static ArmazenamentoColunar.Criterios criteriosColunares(ContatoFiltro filtro) {
+        return new ArmazenamentoColunar.Criterios(
+                filtro.getCategoria().map(Categoria::ordinal).orElse(-1),
+                filtro.getFavorito().orElse(null),
+                filtro.getDataNascimentoInicio().orElse(null),
+                filtro.getDataNascimentoFim().orElse(null),
+                filtro.getNome().filter(PlanejadorConsultas::preenchido).map(NormalizadorTexto::normalizar).orElse(null),
+                filtro.getEmail().filter(PlanejadorConsultas::preenchido).map(NormalizadorTexto::normalizar).orElse(null));
+    }
+
+    private Candidato candidatoTexto(String campo, String forma) {
+        long estimativa = indiceTrigramas.estimar(forma);
+        if (estimativa < 0) {
+            return null;
+        }
+        return new Candidato(PlanoConsulta.Acesso.TEXTO, campo + " '" + forma + "'", estimativa,
+                aposId -> indiceTrigramas.candidatosExatos(forma)
+                        .map(candidatos -> store.buscarTodos(candidatos.tailSet(aposId, false)))
+                        .orElseGet(Stream::empty));
+    }
+
+    // IDs maiores que aposId de uma lista em ordem crescente, achados por busca binária
+    private static long[] apos(long[] ids, long aposId) {
+        int inicio = Arrays.binarySearch(ids, aposId);
+        inicio = inicio >= 0 ? inicio + 1 : -inicio - 1;
+        return inicio == 0 ? ids : Arrays.copyOfRange(ids, inicio, ids.length);
+    }
+
+    private static List<Long> apos(List<Long> ids, long aposId) {
+        int inicio = Collections.binarySearch(ids, aposId);
+        inicio = inicio >= 0 ? inicio + 1 : -inicio - 1;
+        return ids.subList(inicio, ids.size());
+    }
+
+    static boolean preenchido(String texto) {
+        return texto != null && !texto.trim().isEmpty();
+    }
+
+    private record Candidato(PlanoConsulta.Acesso acesso, String detalhe, long estimativa,
+            LongFunction<Stream<Contato>> origem) {
+
+        // Menor estimativa vence; no empate vale a ordem de preferência do enum
+        Candidato ou(Candidato outro) {
+            if (outro == null) {
+                return this;
+            }
+            if (outro.estimativa < estimativa
+                    || (outro.estimativa == estimativa && outro.acesso.compareTo(acesso) < 0)) {
+                return outro;
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.algaworks;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Plano de execução de um {@link ContatoFiltro}, produzido pelo
+ * {@link PlanejadorConsultas}. Tem um caminho de acesso que gera os
+ * candidatos em ordem de ID e uma cadeia de critérios já compilados, do mais
+ * barato para o mais caro, aplicada a cada candidato.
+ */
+public class PlanoConsulta {
+
+    /**
+     * Caminhos de acesso possíveis, em ordem de preferência no empate
+     */
+    public enum Acesso {
+        ID, CATEGORIA, FAVORITOS, DATA_NASCIMENTO, TEXTO, VARREDURA
+    }
+
+    /**
+     * Critério compilado: o texto de busca já foi normalizado uma única vez
+     */
+    public record Criterio(String descricao, int custo, Predicate<Contato> predicado) {
+    }
+
+    /**
+     * Representação do plano para a resposta de explicação da API
+     */
+    public record Explicacao(Acesso acesso, String detalheAcesso, long estimativaCandidatos,
+            long totalContatos, List<String> criterios) {
+    }
+
+    private final Acesso acesso;
+    private final String detalheAcesso;
+    private final long estimativa;
+    private final long total;
+    private final LongFunction<Stream<Contato>> origem;
+    private final List<Criterio> criterios;
+    private final Predicate<Contato>[] predicados;
+
+    @SuppressWarnings("unchecked")
+    PlanoConsulta(Acesso acesso, String detalheAcesso, long estimativa, long total,
+            LongFunction<Stream<Contato>> origem, List<Criterio> criterios) {
+        this.acesso = acesso;
+        this.detalheAcesso = detalheAcesso;
+        this.estimativa = estimativa;
+        this.total = total;
+        this.origem = origem;
+        this.criterios = criterios;
+        this.predicados = criterios.stream().map(Criterio::predicado).toArray(Predicate[]::new);
+    }
+
+    /**
+     * Executa o plano, devolvendo os contatos aceitos em ordem de ID
+     */
+    public Stream<Contato> executar() {
+        return executar(Pagina.INICIO);
+    }
+
+    /**
+     * Executa o plano a partir do primeiro ID maior que {@code aposId}; o
+     * caminho de acesso já começa nesse ponto, sem gerar os anteriores
+     */
+    public Stream<Contato> executar(long aposId) {
+        return origem.apply(aposId).filter(this::aceita);
+    }
+
+    /**
+     * Se o contato passa por todos os critérios do plano, para percorrer
+     * outro caminho que não o de acesso (como um índice de ordenação)
+     */
+    public boolean aceita(Contato contato) {
+        for (Predicate<Contato> predicado : predicados) {
+            if (!predicado.test(contato)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Acesso getAcesso() {
+        return acesso;
+    }
+
+    public Explicacao explicar() {
+        return new Explicacao(acesso, detalheAcesso, estimativa, total,
+                criterios.stream().map(Criterio::descricao).toList());
+    }
+}
@@ -0,0 +1,120 @@
+package com.algaworks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registro compactado das alterações de contatos para a sincronização
+ * incremental. Cada escrita recebe uma sequência e substitui a entrada
+ * anterior do mesmo ID, então o registro guarda só a última alteração de
+ * cada contato: o contato como ficou ou, na remoção, uma lápide com o ID.
+ * Quem sincronizou até a sequência N recebe uma entrada por contato alterado
+ * depois dela, por mais escritas que ele tenha tido.
+ *
+ * Os contatos existentes ocupam no máximo uma entrada cada; as lápides são
+ * limitadas ({@code contatos.sincronizacao.remocoes}) e, ao descartar a mais
+ * antiga, o horizonte avança até ela. Um cliente sincronizado antes do
+ * horizonte pode ter perdido remoções e precisa recarregar tudo.
+ *
+ * As sequências de cada execução começam no instante de inicialização em
+ * milissegundos vezes mil, que é também o primeiro horizonte. Assim as
+ * sequências de uma execução anterior, cujas lápides se perderam, ficam
+ * sempre abaixo do horizonte da atual.
+ */
+public class RegistroAlteracoes implements OuvinteContatos {
+
+    private final int remocoesMaximas;
+
+    // Última entrada de cada contato, em ordem de sequência
+    private final TreeMap<Long, Delta> porSequencia = new TreeMap<>();
+
+    private final Map<Long, Long> sequenciaPorId = new HashMap<>();
+
+    // Sequências das lápides, da mais antiga à mais recente; pode conter
+    // lápides já substituídas por uma nova inclusão do mesmo ID
+    private final ArrayDeque<Long> remocoes = new ArrayDeque<>();
+
+    private int lapides;
+
+    private long horizonte;
+
+    private long ultima;
+
+    /**
+     * Última alteração de um contato; {@code contato} é null quando ele foi removido
+     */
+    public record Delta(long sequencia, Long id, boolean removido, Contato contato) {
+    }
+
+    /**
+     * Resultado de uma sincronização. Com {@code ressincronizar}, as
+     * alterações vêm vazias e o cliente deve guardar a marca, recarregar
+     * todos os contatos e depois sincronizar a partir dela. Com
+     * {@code temMais}, a marca é a da última alteração devolvida e há outras
+     * depois dela.
+     */
+    public record Sincronizacao(long marca, boolean ressincronizar, boolean temMais, List<Delta> alteracoes) {
+    }
+
+    public RegistroAlteracoes(int remocoesMaximas) {
+        if (remocoesMaximas < 0) {
+            throw new IllegalArgumentException("Remoções guardadas não pode ser negativo: " + remocoesMaximas);
+        }
+        this.remocoesMaximas = remocoesMaximas;
+        this.horizonte = System.currentTimeMillis() * 1000;
+        this.ultima = horizonte;
+    }
+
+    @Override
+    public synchronized void contatoAlterado(Contato anterior, Contato atual, long versao) {
+        Long id = atual != null ? atual.getId() : anterior.getId();
+        Long substituida = sequenciaPorId.get(id);
+        if (substituida != null && porSequencia.remove(substituida).removido()) {
+            lapides--;
+        }
+        ultima++;
+        porSequencia.put(ultima, new Delta(ultima, id, atual == null, atual));
+        sequenciaPorId.put(id, ultima);
+        if (atual == null) {
+            remocoes.addLast(ultima);
+            lapides++;
+            descartarLapides();
+        }
+    }
+
+    /**
+     * Até {@code limite} alterações posteriores à marca, em ordem de
+     * sequência, ou o pedido de ressincronização quando a marca está antes
+     * do horizonte ou não é desta execução
+     */
+    public synchronized Sincronizacao desde(long marca, int limite) {
+        if (marca < horizonte || marca > ultima) {
+            return new Sincronizacao(ultima, true, false, List.of());
+        }
+        List<Delta> alteracoes = new ArrayList<>(Math.min(limite, porSequencia.size()));
+        for (Delta delta : porSequencia.tailMap(marca, false).values()) {
+            if (alteracoes.size() == limite) {
+                return new Sincronizacao(alteracoes.get(limite - 1).sequencia(), false, true, alteracoes);
+            }
+            alteracoes.add(delta);
+        }
+        return new Sincronizacao(ultima, false, false, alteracoes);
+    }
+
+    private void descartarLapides() {
+        while (lapides > remocoesMaximas) {
+            long sequencia = remocoes.pollFirst();
+            Delta delta = porSequencia.get(sequencia);
+            if (delta != null && delta.removido()) {
+                porSequencia.remove(sequencia);
+                sequenciaPorId.remove(delta.id());
+                lapides--;
+                horizonte = sequencia;
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara o mapa primitivo de ID para linha dos segmentos colunares com um
+ * HashMap, com IDs de bits baixos iguais como os de um mesmo segmento.
+ */
+class ArmazenamentoColunarTest {
+
+    @Test
+    void mapaLinhasIgualAHashMap() {
+        ArmazenamentoColunar.MapaLinhas mapa = new ArmazenamentoColunar.MapaLinhas();
+        Map<Long, Integer> esperado = new HashMap<>();
+        Random random = new Random(19);
+        for (int i = 0; i < 200_000; i++) {
+            long id = 7 + 64L * random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Integer linha = esperado.remove(id);
+                assertEquals(linha != null ? linha : -1, mapa.remover(id));
+            } else {
+                esperado.put(id, i);
+                mapa.colocar(id, i);
+            }
+            if (i % 1_000 == 0) {
+                assertEquals(esperado.size(), mapa.tamanho());
+                for (long outro = 7; outro < 7 + 64L * 5_000; outro += 64) {
+                    assertEquals(esperado.getOrDefault(outro, -1), mapa.obter(outro));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * Confere as ETags das listagens, das estatísticas e de {@code /{id}}: mudam
+ * com as escritas e entre execuções, e um If-None-Match igual recebe 304 sem
+ * que a consulta chegue ao serviço.
+ */
+class ContatoRestControllerTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ModuloJsonContato()).build();
+
+    private ServicoContado contatoService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        contatoService = new ServicoContado();
+        mockMvc = mockMvc(contatoService);
+    }
+
+    @Test
+    void listagensRespondem304SemConsultarEMudamComEscritas() throws Exception {
+        for (String caminho : List.of("/api/contatos", "/api/contatos/favoritos", "/api/contatos/estatisticas")) {
+            String etag = etag(caminho);
+            int consultas = contatoService.consultas.get();
+
+            mockMvc.perform(get(caminho).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+            assertEquals(consultas, contatoService.consultas.get(), caminho);
+
+            contatoService.alternarFavorito(1L);
+            String depois = etag(caminho);
+            assertNotEquals(etag, depois, caminho);
+            mockMvc.perform(get(caminho).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void contatoUsaAVersaoPropria() throws Exception {
+        String etag = etag("/api/contatos/1");
+        assertEquals(etag, etag("/api/contatos/1"));
+        mockMvc.perform(get("/api/contatos/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // Escritas em outro contato não mudam a ETag deste
+        contatoService.alternarFavorito(2L);
+        assertEquals(etag, etag("/api/contatos/1"));
+
+        contatoService.alternarFavorito(1L);
+        assertNotEquals(etag, etag("/api/contatos/1"));
+        mockMvc.perform(get("/api/contatos/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void etagDeOutraExecucaoNaoVale() throws Exception {
+        String etag = etag("/api/contatos/favoritos");
+        String etagContato = etag("/api/contatos/1");
+        Thread.sleep(2);
+
+        // Outra execução com os mesmos contatos chega às mesmas versões
+        MockMvc reiniciado = mockMvc(new ServicoContado());
+        reiniciado.perform(get("/api/contatos/favoritos").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        reiniciado.perform(get("/api/contatos/1").header(HttpHeaders.IF_NONE_MATCH, etagContato))
+                .andExpect(status().isOk());
+    }
+
+    private String etag(String caminho) throws Exception {
+        String etag = mockMvc.perform(get(caminho))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag, caminho);
+        return etag;
+    }
+
+    private MockMvc mockMvc(ContatoService contatoService) {
+        ContatoRestController controller = new ContatoRestController();
+        ReflectionTestUtils.setField(controller, "contatoService", contatoService);
+        ReflectionTestUtils.setField(controller, "objectMapper", objectMapper);
+        return MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    // Conta as consultas que chegam ao serviço pelos endpoints com ETag
+    private static final class ServicoContado extends ContatoService {
+
+        final AtomicInteger consultas = new AtomicInteger();
+
+        ServicoContado() {
+            super(new ContatoStore());
+        }
+
+        @Override
+        public Pagina<Contato> buscarTodos(String ordenar, String cursor, Integer limite) {
+            consultas.incrementAndGet();
+            return super.buscarTodos(ordenar, cursor, limite);
+        }
+
+        @Override
+        public Pagina<Contato> buscarFavoritos(String ordenar, String cursor, Integer limite) {
+            consultas.incrementAndGet();
+            return super.buscarFavoritos(ordenar, cursor, limite);
+        }
+
+        @Override
+        public Map<String, Object> obterEstatisticas() {
+            consultas.incrementAndGet();
+            return super.obterEstatisticas();
+        }
+
+        @Override
+        public Optional<Contato> buscarPorId(Long id) {
+            consultas.incrementAndGet();
+            return super.buscarPorId(id);
+        }
+    }
+}
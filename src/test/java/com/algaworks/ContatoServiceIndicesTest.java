@@ -0,0 +1,600 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.text.Collator;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara os índices secundários e as estatísticas incrementais do
+ * ContatoService com uma varredura completa depois de sequências aleatórias
+ * de escritas.
+ */
+class ContatoServiceIndicesTest {
+
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+
+    private ContatoService contatoService;
+
+    private IndiceCategoria indiceCategoria;
+
+    private IndiceFavoritos indiceFavoritos;
+
+    private ArmazenamentoColunar colunar;
+
+    @BeforeEach
+    void setUp() {
+        ContatoStore store = new ContatoStore();
+        contatoService = new ContatoService(store);
+
+        // Índices próprios do teste, para conferir o conteúdo bruto sem o
+        // filtro de verificação aplicado pelo serviço
+        indiceCategoria = new IndiceCategoria();
+        indiceFavoritos = new IndiceFavoritos();
+        colunar = new ArmazenamentoColunar();
+        store.registrarIndice(indiceCategoria);
+        store.registrarIndice(indiceFavoritos);
+        store.registrarIndice(colunar);
+    }
+
+    @Test
+    void indicesConsistentesAposMutacoesAleatorias() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+
+        verificarIndices();
+    }
+
+    @Test
+    void indicesConsistentesComEscritoresConcorrentes() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long semente = t;
+                tarefas.add(executor.submit(() -> {
+                    Random random = new Random(semente);
+                    for (int i = 0; i < 2_000; i++) {
+                        aplicarMutacaoAleatoria(random);
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        verificarIndices();
+    }
+
+    @Test
+    void buscaPorTextoIgualAVarreduraCompleta() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+
+        for (String nome : List.of("João Conceição", "JOAO CONCEICAO", "Márcia Ângela")) {
+            contatoService.salvar(new Contato(null, nome, "(21) 3456-7890", "acentos@email.com",
+                    "Praça São Brás, 5", null, Categoria.AMIGOS, false));
+        }
+
+        for (String texto : List.of("contato 1", "CONTATO 42", "rua", "99999-9", "Oliv", "@email.com", "xyz", "1",
+                "ma", "joao", "CONCEIÇÃO", "angela", "sao bras", "213456", "(21) 3456", "3456-78")) {
+            String textoBusca = semAcentos(texto);
+            // Telefone só entra quando a busca tem apenas caracteres de telefone, comparando dígitos
+            String digitos = texto.matches("[0-9 ().+-]*[0-9][0-9 ().+-]*") ? texto.replaceAll("[^0-9]", "") : null;
+            List<Long> esperado = contatoService.buscarTodos().stream()
+                    .filter(contato -> semAcentos(contato.getNome()).contains(textoBusca)
+                    || (digitos != null && contato.getTelefone().replaceAll("[^0-9]", "").contains(digitos))
+                    || semAcentos(contato.getEmail()).contains(textoBusca)
+                    || semAcentos(contato.getEndereco()).contains(textoBusca))
+                    .map(Contato::getId)
+                    .collect(Collectors.toList());
+            assertEquals(esperado, ids(contatoService.buscarPorTexto(texto)), texto);
+        }
+        assertEquals(2, contatoService.buscarPorTexto("joão conceicao").size());
+        assertEquals(2, contatoService.buscarComFiltros(ContatoFiltro.builder().nome("CONCEIÇAO").build()).size());
+        assertEquals(3, contatoService.buscarComFiltros(ContatoFiltro.builder().telefone("21 3456-7890").build()).size());
+    }
+
+    private static String semAcentos(String texto) {
+        return Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    @Test
+    void filtroPorDataNascimentoIgualAVarreduraCompleta() {
+        Random random = new Random(11);
+        for (int i = 0; i < 2_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+
+        LocalDate inicio = LocalDate.of(1970, 1, 1);
+        LocalDate fim = LocalDate.of(1985, 1, 1);
+        List<Contato> noIntervalo = contatoService.buscarTodos().stream()
+                .filter(contato -> !contato.getDataNascimento().isBefore(inicio)
+                && !contato.getDataNascimento().isAfter(fim))
+                .collect(Collectors.toList());
+
+        ContatoFiltro filtro = ContatoFiltro.builder()
+                .dataNascimentoInicio(inicio)
+                .dataNascimentoFim(fim)
+                .build();
+        assertEquals(ids(noIntervalo), ids(contatoService.buscarComFiltros(filtro)));
+
+        ContatoFiltro filtroComNome = ContatoFiltro.builder()
+                .nome("contato 1")
+                .dataNascimentoInicio(inicio)
+                .dataNascimentoFim(fim)
+                .build();
+        List<Long> esperado = noIntervalo.stream()
+                .filter(contato -> contato.getNome().toLowerCase().contains("contato 1"))
+                .map(Contato::getId)
+                .collect(Collectors.toList());
+        assertEquals(esperado, ids(contatoService.buscarComFiltros(filtroComNome)));
+    }
+
+    @Test
+    void filtrosCombinadosIgualAVarreduraCompleta() {
+        Random random = new Random(13);
+        for (int i = 0; i < 2_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+
+        ContatoFiltro filtro = ContatoFiltro.builder()
+                .nome("contato")
+                .email("@EMAIL")
+                .categoria(Categoria.AMIGOS)
+                .favorito(true)
+                .dataNascimentoInicio(LocalDate.of(1960, 1, 1))
+                .build();
+        List<Long> esperado = contatoService.buscarTodos().stream()
+                .filter(contato -> contato.getNome().toLowerCase().contains("contato"))
+                .filter(contato -> contato.getEmail().toLowerCase().contains("@email"))
+                .filter(contato -> contato.getCategoria() == Categoria.AMIGOS && contato.isFavorito())
+                .filter(contato -> !contato.getDataNascimento().isBefore(LocalDate.of(1960, 1, 1)))
+                .map(Contato::getId)
+                .collect(Collectors.toList());
+
+        assertEquals(esperado, ids(contatoService.buscarComFiltros(filtro)));
+        assertEquals(PlanoConsulta.Acesso.CATEGORIA, contatoService.explicarFiltros(filtro).acesso());
+
+        // Sem índice aplicável: varredura do armazenamento colunar
+        ContatoFiltro naoFavoritos = ContatoFiltro.builder()
+                .nome("1")
+                .favorito(false)
+                .email("co")
+                .build();
+        List<Long> esperadoVarredura = contatoService.buscarTodos().stream()
+                .filter(contato -> contato.getNome().contains("1") && !contato.isFavorito())
+                .filter(contato -> contato.getEmail().contains("co"))
+                .map(Contato::getId)
+                .collect(Collectors.toList());
+
+        assertEquals(esperadoVarredura, ids(contatoService.buscarComFiltros(naoFavoritos)));
+        assertEquals(PlanoConsulta.Acesso.VARREDURA, contatoService.explicarFiltros(naoFavoritos).acesso());
+    }
+
+    @Test
+    void buscaAproximadaIgualAVarreduraCompleta() {
+        Random random = new Random(23);
+        for (int i = 0; i < 2_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+        for (String nome : List.of("Ana Oliveira", "Bruno Olivier", "Carla Silveira", "Olívia Souza", "Otávio Lima")) {
+            contatoService.salvar(new Contato(null, nome, "(11) 91234-5678", null, null, null, Categoria.AMIGOS, false));
+        }
+
+        List<Contato> todos = contatoService.buscarTodos();
+        for (String texto : List.of("Olivera", "olivia", "contato 12", "CONTATTO", "silvera ana", "xyzw", "otavio")) {
+            for (int distancia = 0; distancia <= 2; distancia++) {
+                List<String> palavras = IndiceBkTree.palavras(NormalizadorTexto.normalizar(texto));
+                int maxima = distancia;
+                List<Long> esperado = todos.stream()
+                        .filter(contato -> IndiceBkTree.distancia(contato.getNomeBusca(), palavras, maxima) >= 0)
+                        .sorted(Comparator.comparingInt((Contato contato) ->
+                                IndiceBkTree.distancia(contato.getNomeBusca(), palavras, maxima))
+                                .thenComparing(Contato::getId))
+                        .map(Contato::getId)
+                        .collect(Collectors.toList());
+                assertEquals(esperado, ids(contatoService.buscarAproximado(texto, distancia)), texto + "/" + distancia);
+            }
+        }
+
+        List<Contato> oliveira = contatoService.buscarAproximado("Olivera", 2);
+        assertEquals("Ana Oliveira", oliveira.get(0).getNome());
+        verificarPaginas(contatoService.buscarAproximado("contato 1", 1),
+                (cursor, limite) -> contatoService.buscarAproximado("contato 1", 1, cursor, limite), random);
+        assertThrows(IllegalArgumentException.class, () -> contatoService.buscarAproximado("ana", 4));
+    }
+
+    @Test
+    void bkTreeReconstruidaContinuaCorreta() {
+        IndiceBkTree indice = new IndiceBkTree();
+        List<Contato> contatos = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            Contato contato = new Contato((long) i, "Pessoa " + Integer.toString(i * 7919, 36), "(11) 91234-5678");
+            contatos.add(contato);
+            indice.indexar(contato);
+        }
+        // Remove quase todos, o que força a reconstrução da árvore
+        for (Contato contato : contatos.subList(10, contatos.size())) {
+            indice.desindexar(contato);
+        }
+        for (Contato contato : contatos.subList(0, 10)) {
+            List<String> palavras = IndiceBkTree.palavras(contato.getNomeBusca());
+            assertTrue(indice.candidatos(palavras, 0).contains(contato.getId()));
+        }
+        assertEquals(10, indice.candidatos(List.of("pessoa"), 0).size());
+        assertEquals(0, indice.candidatos(List.of(Integer.toString(20 * 7919, 36)), 0).size());
+    }
+
+    @Test
+    void autocompletarIgualAVarreduraCompleta() {
+        Random random = new Random(29);
+        for (int i = 0; i < 2_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+        contatoService.salvar(new Contato(null, "Ângela Souza", "(11) 91234-5678", null, null, null, Categoria.AMIGOS, true));
+
+        List<Contato> todos = contatoService.buscarTodos();
+        Comparator<Contato> ordem = Comparator.comparing(Contato::isFavorito)
+                .thenComparing(Contato::getDataAtualizacao, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Contato::getId)
+                .reversed();
+        for (String prefixo : List.of("c", "cont", "CONTATO", "contato 1", "1 cont", "contato 99", "ang", "ângela s", "xyz")) {
+            for (int limite : List.of(3, 10)) {
+                List<String> prefixos = IndiceBkTree.palavras(NormalizadorTexto.normalizar(prefixo));
+                List<Long> esperado = todos.stream()
+                        .filter(contato -> IndiceAutocompletar.comecaCom(contato.getNomeBusca(), prefixos))
+                        .sorted(ordem)
+                        .limit(limite)
+                        .map(Contato::getId)
+                        .collect(Collectors.toList());
+                assertEquals(esperado, ids(contatoService.autocompletar(prefixo, limite)), prefixo + "/" + limite);
+            }
+        }
+
+        assertEquals("Ângela Souza", contatoService.autocompletar("angela", null).get(0).getNome());
+        assertEquals(List.of(), contatoService.autocompletar("  ", null));
+        assertThrows(IllegalArgumentException.class, () -> contatoService.autocompletar("ana", 11));
+    }
+
+    @Test
+    void paginasConcatenadasIgualAListaCompleta() {
+        Random random = new Random(17);
+        for (int i = 0; i < 2_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+
+        ContatoFiltro filtro = ContatoFiltro.builder().nome("contato").favorito(false).build();
+        verificarPaginas(contatoService.buscarTodos(),
+                (cursor, limite) -> contatoService.buscarTodos(null, cursor, limite), random);
+        verificarPaginas(contatoService.buscarComFiltros(filtro),
+                (cursor, limite) -> contatoService.buscarComFiltros(filtro, null, cursor, limite), random);
+        verificarPaginas(contatoService.buscarPorTexto("rua"),
+                (cursor, limite) -> contatoService.buscarPorTexto("rua", null, cursor, limite), random);
+        verificarPaginas(contatoService.buscarFavoritos(),
+                (cursor, limite) -> contatoService.buscarFavoritos(null, cursor, limite), random);
+        verificarPaginas(contatoService.buscarPorCategoria(Categoria.AMIGOS),
+                (cursor, limite) -> contatoService.buscarPorCategoria(Categoria.AMIGOS, null, cursor, limite), random);
+
+        assertThrows(IllegalArgumentException.class, () -> contatoService.buscarTodos(null, "!!", 10));
+        assertThrows(IllegalArgumentException.class, () -> contatoService.buscarTodos(null, null, 0));
+    }
+
+    @Test
+    void paginasOrdenadasIgualAOrdenacaoCompleta() {
+        Random random = new Random(19);
+        for (int i = 0; i < 2_000; i++) {
+            aplicarMutacaoAleatoria(random);
+        }
+        for (String nome : List.of("João Alves", "Joao Alves", "joão alves", "Joaquim Reis", "Álvaro Dias", "Zé Lima")) {
+            contatoService.salvar(new Contato(null, nome, "(11) 91234-5678", null, "Rua Z, 1", null,
+                    Categoria.AMIGOS, false));
+        }
+
+        Collator collator = Collator.getInstance(Locale.of("pt", "BR"));
+        Comparator<Contato> porNome = Comparator.comparing(Contato::getNome, collator)
+                .thenComparing(Contato::getId);
+        List<Contato> todos = contatoService.buscarTodos();
+        List<Contato> esperado = todos.stream().sorted(porNome).collect(Collectors.toList());
+        verificarPaginas(esperado, (cursor, limite) -> contatoService.buscarTodos("nome", cursor, limite), random);
+        verificarPaginas(esperado.reversed(),
+                (cursor, limite) -> contatoService.buscarTodos("nome,desc", cursor, limite), random);
+
+        List<String> acentuados = esperado.stream().map(Contato::getNome)
+                .filter(nome -> nome.toLowerCase().startsWith("jo")).collect(Collectors.toList());
+        assertEquals(List.of("Joao Alves", "joão alves", "João Alves", "Joaquim Reis"), acentuados);
+
+        // Datas ausentes ficam no começo da ordem crescente
+        Comparator<Contato> porNascimento = Comparator.comparing(Contato::getDataNascimento,
+                Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(Contato::getId);
+        verificarPaginas(todos.stream().filter(Contato::isFavorito).sorted(porNascimento).collect(Collectors.toList()),
+                (cursor, limite) -> contatoService.buscarFavoritos("dataNascimento", cursor, limite), random);
+
+        ContatoFiltro filtro = ContatoFiltro.builder().categoria(Categoria.AMIGOS).nome("contato").build();
+        verificarPaginas(contatoService.buscarComFiltros(filtro).stream()
+                .sorted(Comparator.comparing(Contato::getDataAtualizacao).thenComparing(Contato::getId).reversed())
+                .collect(Collectors.toList()),
+                (cursor, limite) -> contatoService.buscarComFiltros(filtro, "dataAtualizacao,desc", cursor, limite),
+                random);
+
+        // Cursor de outra ordenação ou da ordem por ID não vale
+        String cursorNome = contatoService.buscarTodos("nome", null, 1).proximo();
+        assertThrows(IllegalArgumentException.class, () -> contatoService.buscarTodos("nome,desc", cursorNome, 1));
+        String cursorId = contatoService.buscarTodos(null, null, 1).proximo();
+        assertThrows(IllegalArgumentException.class, () -> contatoService.buscarTodos("nome", cursorId, 1));
+        assertThrows(IllegalArgumentException.class, () -> contatoService.buscarTodos("telefone", null, 1));
+    }
+
+    @Test
+    void cacheDeConsultasNuncaDevolvePaginaAnteriorAEscrita() throws Exception {
+        ContatoFiltro filtro = ContatoFiltro.builder().nome("CONTATO").favorito(true).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicBoolean escrevendo = new AtomicBoolean(true);
+        try {
+            // Leitores repetem as consultas enquanto os escritores alteram os contatos
+            List<Future<?>> leitores = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                leitores.add(executor.submit(() -> {
+                    while (escrevendo.get()) {
+                        contatoService.buscarComFiltros(filtro, null, null, 1000);
+                        contatoService.buscarFavoritos(null, null, 1000);
+                        contatoService.buscarPorCategoria(Categoria.AMIGOS, "nome", null, 1000);
+                    }
+                }));
+            }
+            List<Future<?>> escritores = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long semente = t;
+                escritores.add(executor.submit(() -> {
+                    Random random = new Random(semente);
+                    for (int i = 0; i < 1_000; i++) {
+                        aplicarMutacaoAleatoria(random);
+                    }
+                }));
+            }
+            for (Future<?> escritor : escritores) {
+                escritor.get();
+            }
+            escrevendo.set(false);
+            for (Future<?> leitor : leitores) {
+                leitor.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Random random = new Random(37);
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 == 0) {
+                aplicarMutacaoAleatoria(random);
+            }
+            List<Contato> todos = contatoService.buscarTodos();
+            assertEquals(ids(todos.stream()
+                    .filter(contato -> contato.isFavorito() && contato.getNomeBusca().contains("contato"))
+                    .collect(Collectors.toList())), ids(contatoService.buscarComFiltros(filtro, null, null, 1000).itens()));
+            assertEquals(ids(todos.stream().filter(Contato::isFavorito).collect(Collectors.toList())),
+                    ids(contatoService.buscarFavoritos(null, null, 1000).itens()));
+        }
+
+        assertTrue((Long) contatoService.obterEstatisticasCache().get("acertos") > 0);
+
+        // As páginas de todas as categorias e a dos favoritos, com os
+        // contatos iniciais, passam do peso máximo 10
+        ContatoService pequeno = new ContatoService(new ContatoStore(), Optional.empty(), 10);
+        for (Categoria categoria : CATEGORIAS) {
+            pequeno.buscarPorCategoria(categoria, null, null, null);
+        }
+        pequeno.buscarFavoritos(null, null, null);
+        Map<String, Object> cachePequeno = pequeno.obterEstatisticasCache();
+        assertTrue((Long) cachePequeno.get("despejos") > 0);
+        assertTrue((Long) cachePequeno.get("peso") <= 10);
+    }
+
+    @Test
+    void cacheDeConsultasAcertosConcorrentesEDespejoDasMenosUsadas() throws Exception {
+        CacheConsultas cache = new CacheConsultas(new ContatoStore(), 10);
+        CacheConsultas.Chave quente = new CacheConsultas.Chave("teste", 0, null, null, 1);
+        Pagina<Contato> pagina = new Pagina<>(List.of(), null);
+        assertSame(pagina, cache.obter(quente, () -> pagina));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> leitores = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                leitores.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        assertSame(pagina, cache.obter(quente, () -> new Pagina<>(List.of(), null)));
+                    }
+                }));
+            }
+            for (Future<?> leitor : leitores) {
+                leitor.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(80_000L, cache.estatisticas().get("acertos"));
+        assertEquals(1L, cache.estatisticas().get("faltas"));
+
+        // Peso 1 por entrada: a quente, acessada entre as inclusões, sobrevive aos despejos
+        for (int i = 1; i <= 30; i++) {
+            cache.obter(new CacheConsultas.Chave("teste", i, null, null, 1), () -> new Pagina<>(List.of(), null));
+            Thread.sleep(1);
+            cache.obter(quente, () -> new Pagina<>(List.of(), null));
+        }
+        Map<String, Object> estatisticas = cache.estatisticas();
+        assertTrue((Long) estatisticas.get("despejos") > 0);
+        assertTrue((Long) estatisticas.get("peso") <= 10);
+        assertEquals(31L, estatisticas.get("faltas"));
+    }
+
+    @Test
+    void atualizacoesOtimistasConcorrentesNaoPerdemEscritas() throws Exception {
+        Contato contato = contatoService.salvar(new Contato(null, "Contador", "(11) 99999-9999",
+                null, "0", null, Categoria.OUTROS, false));
+        long versaoInicial = contato.getVersao();
+        int threads = 8;
+        int incrementos = 500;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tarefas.add(executor.submit(() -> {
+                    for (int i = 0; i < incrementos; i++) {
+                        // Lê, incrementa e tenta gravar com a versão lida até não haver conflito
+                        while (true) {
+                            Contato atual = contatoService.buscarPorId(contato.getId()).orElseThrow();
+                            Contato alteracao = new Contato(null, atual.getNome(), atual.getTelefone(), null,
+                                    String.valueOf(Integer.parseInt(atual.getEndereco()) + 1), null,
+                                    Categoria.OUTROS, false);
+                            alteracao.setVersao(atual.getVersao());
+                            try {
+                                contatoService.atualizar(contato.getId(), alteracao);
+                                break;
+                            } catch (ConflitoVersaoException e) {
+                                // Outra thread gravou antes; tenta de novo sobre o valor novo
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Contato finalizado = contatoService.buscarPorId(contato.getId()).orElseThrow();
+        assertEquals(String.valueOf(threads * incrementos), finalizado.getEndereco());
+        assertEquals(versaoInicial + threads * incrementos, finalizado.getVersao());
+    }
+
+    @Test
+    void salvarIgnoraIdInformado() {
+        Contato existente = contatoService.buscarPorId(1L).orElseThrow();
+        Contato comIdExistente = new Contato(1L, "Rita Lopes", "(11) 91234-5678");
+        comIdExistente.setVersao(existente.getVersao() + 5);
+        Contato salvo = contatoService.salvar(comIdExistente);
+        assertTrue(salvo.getId() > 5);
+        assertEquals(1, salvo.getVersao());
+        assertEquals(existente.getNome(), contatoService.buscarPorId(1L).orElseThrow().getNome());
+        assertEquals(existente.getVersao(), contatoService.buscarPorId(1L).orElseThrow().getVersao());
+
+        // IDs fora da faixa não avançam a sequência nem quebram as inclusões seguintes
+        for (long id : new long[] { Long.MAX_VALUE, -1L }) {
+            Contato foraDaFaixa = contatoService.salvar(new Contato(id, "Rita Lopes", "(11) 91234-5678"));
+            assertEquals(salvo.getId() + 1, foraDaFaixa.getId());
+            salvo = foraDaFaixa;
+        }
+        assertEquals(salvo.getId() + 1,
+                contatoService.salvar(new Contato(null, "Rita Lopes", "(11) 91234-5678")).getId());
+    }
+
+    private void aplicarMutacaoAleatoria(Random random) {
+        long id = 1 + random.nextInt(200);
+        switch (random.nextInt(4)) {
+            case 0 -> contatoService.salvar(novoContato(random));
+            case 1 -> contatoService.atualizar(id, novoContato(random));
+            case 2 -> contatoService.remover(id);
+            default -> contatoService.alternarFavorito(id);
+        }
+    }
+
+    private Contato novoContato(Random random) {
+        return new Contato(null, "Contato " + random.nextInt(1000), "(11) 9" + (1000_0000 + random.nextInt(9000_0000)),
+                "contato" + random.nextInt(100) + "@email.com", "Rua " + (char) ('A' + random.nextInt(26)) + ", 1", LocalDate.of(1950 + random.nextInt(60), 1, 1),
+                CATEGORIAS[random.nextInt(CATEGORIAS.length)], random.nextBoolean());
+    }
+
+    private void verificarIndices() {
+        List<Contato> todos = contatoService.buscarTodos();
+
+        for (Categoria categoria : CATEGORIAS) {
+            List<Long> esperado = todos.stream()
+                    .filter(contato -> contato.getCategoria() == categoria)
+                    .map(Contato::getId)
+                    .collect(Collectors.toList());
+            assertEquals(esperado, new ArrayList<>(indiceCategoria.ids(categoria)), categoria.name());
+            assertEquals(esperado, ids(contatoService.buscarPorCategoria(categoria)), categoria.name());
+        }
+
+        List<Long> favoritosEsperados = todos.stream()
+                .filter(Contato::isFavorito)
+                .map(Contato::getId)
+                .collect(Collectors.toList());
+        assertEquals(favoritosEsperados, new ArrayList<>(indiceFavoritos.ids()));
+        assertEquals(favoritosEsperados, ids(contatoService.buscarFavoritos()));
+
+        // Colunas de todos os segmentos, sem o filtro de verificação do planejador
+        assertEquals(todos.size(), colunar.tamanho());
+        assertEquals(todos.stream().map(Contato::getId).toList(), Arrays.stream(colunar.filtrar(
+                new ArmazenamentoColunar.Criterios(-1, null, null, null, null, null))).boxed().toList());
+        assertEquals(favoritosEsperados, Arrays.stream(colunar.filtrar(
+                new ArmazenamentoColunar.Criterios(-1, true, null, null, null, null))).boxed().toList());
+
+        Map<String, Object> estatisticas = contatoService.obterEstatisticas();
+        assertEquals((long) todos.size(), estatisticas.get("total"));
+        assertEquals((long) favoritosEsperados.size(), estatisticas.get("favoritos"));
+        double mediaIdade = todos.stream()
+                .filter(contato -> contato.getDataNascimento() != null)
+                .mapToInt(Contato::getIdade)
+                .average()
+                .orElse(0.0);
+        assertEquals(Math.round(mediaIdade * 10.0) / 10.0, estatisticas.get("mediaIdade"));
+        assertEquals(todos.stream().collect(Collectors.groupingBy(Contato::getCategoria, Collectors.counting())),
+                estatisticas.get("contagemPorCategoria"));
+    }
+
+    // Percorre a listagem página a página, com limites aleatórios, até o cursor acabar
+    private static void verificarPaginas(List<Contato> esperado,
+            BiFunction<String, Integer, Pagina<Contato>> listagem, Random random) {
+        List<Contato> paginas = new ArrayList<>();
+        String cursor = null;
+        do {
+            int limite = 1 + random.nextInt(50);
+            Pagina<Contato> pagina = listagem.apply(cursor, limite);
+            if (pagina.proximo() != null) {
+                assertEquals(limite, pagina.itens().size());
+            }
+            paginas.addAll(pagina.itens());
+            cursor = pagina.proximo();
+        } while (cursor != null);
+        assertEquals(ids(esperado), ids(paginas));
+        assertNull(listagem.apply(null, esperado.size() + 1).proximo());
+    }
+
+    private static List<Long> ids(List<Contato> contatos) {
+        return contatos.stream().map(Contato::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,108 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Exporta em CSV e reimporta o arquivo, exporta em NDJSON com filtro e
+ * confere que a saída dos dois formatos chega em blocos limitados, sem um
+ * flush por contato e não de uma vez no fim.
+ */
+class ExportadorContatosTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final ContatoService contatoService = new ContatoService(new ContatoStore());
+
+    @Test
+    void csvExportadoPodeSerReimportado() throws Exception {
+        contatoService.salvar(new Contato(null, "Lúcia Prado", "(11) 91234-5678", null,
+                "Rua \"Nova\", 10\nfundos", LocalDate.of(1980, 2, 29), Categoria.MEDICO, true));
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        long exportados = new ExportadorContatos(objectMapper, 1024)
+                .exportar(contatoService.exportar(ContatoFiltro.builder().build()), FormatoContatos.CSV, saida);
+        assertEquals(6, exportados);
+
+        ContatoService destino = new ContatoService(new ContatoStore());
+        ImportadorContatos.Resultado resultado = new ImportadorContatos(destino, objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(), 100)
+                .importar(new ByteArrayInputStream(saida.toByteArray()), FormatoContatos.CSV, StandardCharsets.UTF_8);
+
+        // Os telefones mock de 2 a 5 não passam na validação do cadastro
+        assertEquals(2, resultado.importados());
+        assertEquals(List.of(3L, 4L, 5L, 6L), resultado.erros().stream().map(ImportadorContatos.ErroLinha::linha).toList());
+        List<Contato> origem = contatoService.buscarTodos();
+        assertEquals(descrever(List.of(origem.get(0), origem.get(5))), descrever(destino.buscarTodos().subList(5, 7)));
+    }
+
+    @Test
+    void ndjsonRespeitaOFiltro() throws Exception {
+        ContatoFiltro filtro = ContatoFiltro.builder().favorito(true).build();
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        new ExportadorContatos(objectMapper, 1024).exportar(contatoService.exportar(filtro), FormatoContatos.NDJSON,
+                saida);
+
+        List<Long> ids = new ArrayList<>();
+        for (String linha : saida.toString(StandardCharsets.UTF_8).split("\n")) {
+            ids.add(objectMapper.readValue(linha, Contato.class).getId());
+        }
+        assertEquals(contatoService.buscarComFiltros(filtro).stream().map(Contato::getId).toList(), ids);
+    }
+
+    @Test
+    void saidaEnviadaEmBlocos() throws Exception {
+        for (int i = 0; i < 2_000; i++) {
+            contatoService.salvar(new Contato(null, "Contato Exportado", "(11) 91234-5678"));
+        }
+        for (FormatoContatos formato : FormatoContatos.values()) {
+            List<Integer> escritas = new ArrayList<>();
+            AtomicInteger flushes = new AtomicInteger();
+            OutputStream contador = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    escritas.add(1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    escritas.add(len);
+                }
+
+                @Override
+                public void flush() {
+                    flushes.incrementAndGet();
+                }
+            };
+            long exportados = new ExportadorContatos(objectMapper, 16 * 1024)
+                    .exportar(contatoService.exportar(ContatoFiltro.builder().build()), formato, contador);
+
+            assertEquals(2_005, exportados);
+            assertTrue(escritas.size() > 5, formato.name());
+            assertTrue(escritas.size() < 100, formato + ": " + escritas.size() + " escritas");
+            assertTrue(escritas.stream().allMatch(tamanho -> tamanho <= 16 * 1024), formato.name());
+            // Só no fim da exportação, não a cada contato
+            assertTrue(flushes.get() <= 2, formato + ": " + flushes.get() + " flushes");
+        }
+    }
+
+    private static List<String> descrever(List<Contato> contatos) {
+        return contatos.stream()
+                .map(contato -> contato.getNome() + ":" + contato.getTelefone() + ":" + contato.getEmail() + ":"
+                        + contato.getEndereco() + ":" + contato.getDataNascimento() + ":" + contato.getCategoria()
+                        + ":" + contato.isFavorito())
+                .toList();
+    }
+}
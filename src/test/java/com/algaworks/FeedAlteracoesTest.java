@@ -0,0 +1,180 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Confere a ordem e os tipos dos eventos do feed, a retomada pelo último
+ * evento recebido e que um assinante parado não segura as escritas.
+ */
+class FeedAlteracoesTest {
+
+    private static final Pattern ID = Pattern.compile("id:(\\d+)");
+
+    private static final Pattern NOME = Pattern.compile("event:(\\w+)");
+
+    private final ContatoStore store = new ContatoStore();
+
+    private final ContatoService contatoService = new ContatoService(store);
+
+    private FeedAlteracoes feed;
+
+    @AfterEach
+    void tearDown() {
+        feed.destroy();
+    }
+
+    @Test
+    void eventosNaOrdemDasEscritas() throws Exception {
+        feed = new FeedAlteracoes(store, 100);
+        long inicio = feed.ultimaSequencia();
+        EmissorGravado emissor = new EmissorGravado();
+        feed.assinar(emissor, null);
+
+        Contato contato = contatoService.salvar(new Contato(null, "Rita Lopes", "(11) 91234-5678"));
+        contato.setEmail("rita@email.com");
+        contatoService.atualizar(contato.getId(), contato);
+        contatoService.alternarFavorito(contato.getId());
+        contatoService.remover(contato.getId());
+
+        emissor.aguardar(4);
+        assertEquals(List.of("criado", "atualizado", "favorito", "removido"),
+                emissor.eventos.stream().map(Evento::nome).toList());
+        assertEquals(List.of(inicio + 1, inicio + 2, inicio + 3, inicio + 4),
+                emissor.eventos.stream().map(Evento::id).toList());
+    }
+
+    @Test
+    void retomaPeloUltimoEventoOuEnviaReinicio() throws Exception {
+        feed = new FeedAlteracoes(store, 8);
+        long inicio = feed.ultimaSequencia();
+        for (int i = 0; i < 5; i++) {
+            contatoService.alternarFavorito(1L);
+        }
+        EmissorGravado retomado = new EmissorGravado();
+        feed.assinar(retomado, inicio + 2);
+        retomado.aguardar(3);
+        assertEquals(List.of(inicio + 3, inicio + 4, inicio + 5), retomado.eventos.stream().map(Evento::id).toList());
+
+        for (int i = 0; i < 20; i++) {
+            contatoService.alternarFavorito(1L);
+        }
+        // O evento inicio + 3 já saiu do anel de 8
+        EmissorGravado atrasado = new EmissorGravado();
+        feed.assinar(atrasado, inicio + 2);
+        atrasado.aguardar(1);
+        contatoService.alternarFavorito(1L);
+        atrasado.aguardar(2);
+        assertEquals(List.of(new Evento(inicio + 25, "reinicio"), new Evento(inicio + 26, "favorito")),
+                atrasado.eventos);
+
+        // Um ID além do último, de antes de um reinício do servidor
+        EmissorGravado antigo = new EmissorGravado();
+        feed.assinar(antigo, inicio + 1_000);
+        antigo.aguardar(1);
+        assertEquals("reinicio", antigo.eventos.get(0).nome());
+    }
+
+    @Test
+    void idDeExecucaoAnteriorLevaAoReinicioMesmoAbaixoDoUltimo() throws Exception {
+        // Uma execução anterior que chegou à sequência 500
+        FeedAlteracoes anterior = new FeedAlteracoes(new ContatoStore(), 100);
+        long visto = anterior.ultimaSequencia() + 500;
+        anterior.destroy();
+        Thread.sleep(2);
+
+        feed = new FeedAlteracoes(store, 1_000);
+        for (int i = 0; i < 800; i++) {
+            contatoService.alternarFavorito(1L);
+        }
+        EmissorGravado reconectado = new EmissorGravado();
+        feed.assinar(reconectado, visto);
+        reconectado.aguardar(1);
+        assertEquals(new Evento(feed.ultimaSequencia(), "reinicio"), reconectado.eventos.get(0));
+    }
+
+    @Test
+    void assinanteParadoNaoBloqueiaEscritas() throws Exception {
+        feed = new FeedAlteracoes(store, 16);
+        long inicio = feed.ultimaSequencia();
+        CountDownLatch liberar = new CountDownLatch(1);
+        EmissorGravado parado = new EmissorGravado(liberar);
+        feed.assinar(parado, null);
+        EmissorGravado ativo = new EmissorGravado();
+        feed.assinar(ativo, null);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 2_000; i++) {
+                contatoService.alternarFavorito(1L + i % 5);
+            }
+        });
+        ativo.aguardarSequencia(inicio + 2_000);
+
+        liberar.countDown();
+        parado.aguardarSequencia(inicio + 2_000);
+        assertTrue(parado.eventos.stream().anyMatch(evento -> evento.nome().equals("reinicio")));
+    }
+
+    private record Evento(long id, String nome) {
+    }
+
+    // Guarda o id e o nome de cada evento enviado; opcionalmente trava no primeiro envio
+    private static final class EmissorGravado extends SseEmitter {
+
+        final List<Evento> eventos = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch liberar;
+
+        EmissorGravado() {
+            this(new CountDownLatch(0));
+        }
+
+        EmissorGravado(CountDownLatch liberar) {
+            this.liberar = liberar;
+        }
+
+        @Override
+        public void send(SseEventBuilder evento) throws IOException {
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            StringBuilder texto = new StringBuilder();
+            evento.build().forEach(parte -> texto.append(parte.getData() instanceof String s ? s : ""));
+            Matcher id = ID.matcher(texto);
+            Matcher nome = NOME.matcher(texto);
+            assertTrue(id.find() && nome.find(), texto.toString());
+            eventos.add(new Evento(Long.parseLong(id.group(1)), nome.group(1)));
+        }
+
+        void aguardar(int quantidade) throws InterruptedException {
+            long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (eventos.size() < quantidade && System.nanoTime() < limite) {
+                Thread.sleep(5);
+            }
+            assertEquals(quantidade, eventos.size(), eventos.toString());
+        }
+
+        void aguardarSequencia(long sequencia) throws InterruptedException {
+            long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while ((eventos.isEmpty() || eventos.get(eventos.size() - 1).id() < sequencia)
+                    && System.nanoTime() < limite) {
+                Thread.sleep(5);
+            }
+            assertEquals(sequencia, eventos.get(eventos.size() - 1).id());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Importa CSV e NDJSON com linhas inválidas espalhadas por vários lotes e
+ * confere o relatório por linha e o conteúdo do store. Com
+ * {@code -Dbenchmark=true}, compara a vazão da importação com a inclusão
+ * contato a contato.
+ */
+class ImportadorContatosTest {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final ContatoService contatoService = new ContatoService(new ContatoStore());
+
+    private ImportadorContatos importador(int tamanhoLote) {
+        return new ImportadorContatos(contatoService, Jackson2ObjectMapperBuilder.json().build(), VALIDATOR,
+                tamanhoLote);
+    }
+
+    @Test
+    void importaCsvERelataLinhasInvalidas() throws Exception {
+        String csv = String.join("\n",
+                "Telefone,Nome,email,categoria,dataNascimento,favorito,endereco,extra",
+                "(11) 91234-5678,Beatriz Souza,bia@email.com,TRABALHO,1990-01-31,true,,x",
+                "\"(21) 3333-4444\",Carla Souza,,Família,,não,\"Rua A, 10 \"\"fundos\"\"\"",
+                "",
+                "11912345678,B,,,,,",
+                "(11) 91234-5678,Caio Alves,,TRABALHO,,,",
+                "(11) 91234-5678,Davi Rocha,,,31/01/1990,,",
+                "(11) 91234-5678,Gil Rocha,,Famlia,,,",
+                "(11) 91234-5678,Fábio Nunes,,amigos,,1,\"Rua B, 2",
+                "fundos\"",
+                "(11) 91234-5678,\"Eva Lima,,,,,");
+
+        ImportadorContatos.Resultado resultado = importador(2).importar(entrada(csv), FormatoContatos.CSV,
+                StandardCharsets.UTF_8);
+
+        assertEquals(8, resultado.linhas());
+        assertEquals(3, resultado.importados());
+        assertEquals(5, resultado.rejeitados());
+        Map<Long, List<String>> erros = resultado.erros().stream()
+                .collect(Collectors.toMap(ImportadorContatos.ErroLinha::linha, ImportadorContatos.ErroLinha::mensagens));
+        assertEquals(List.of(5L, 6L, 7L, 8L, 11L), erros.keySet().stream().sorted().toList());
+        assertTrue(erros.get(5L).contains("Nome deve ter entre 2 e 100 caracteres"));
+        assertEquals(List.of("Email é obrigatório para contatos de trabalho"), erros.get(6L));
+        // Uma categoria com erro de digitação não vira OUTROS em silêncio
+        assertEquals(List.of("Categoria desconhecida: Famlia"), erros.get(8L));
+
+        Map<String, Contato> porNome = contatoService.buscarTodos().stream()
+                .collect(Collectors.toMap(Contato::getNome, Function.identity()));
+        Contato beatriz = porNome.get("Beatriz Souza");
+        assertEquals(Categoria.TRABALHO, beatriz.getCategoria());
+        assertTrue(beatriz.isFavorito());
+        Contato carla = porNome.get("Carla Souza");
+        assertEquals(Categoria.FAMILIA, carla.getCategoria());
+        assertEquals("Rua A, 10 \"fundos\"", carla.getEndereco());
+        assertEquals(Categoria.AMIGOS, porNome.get("Fábio Nunes").getCategoria());
+        assertEquals("Rua B, 2\nfundos", porNome.get("Fábio Nunes").getEndereco());
+        assertEquals(8, contatoService.buscarTodos().size());
+    }
+
+    @Test
+    void importaNdjsonIgnorandoIdEVersao() throws Exception {
+        String ndjson = String.join("\n",
+                "{\"id\":1,\"versao\":9,\"nome\":\"Gabriel Dias\",\"telefone\":\"(11) 91234-5678\",\"categoria\":\"AMIGOS\"}",
+                "{\"nome\":\"Helena\",",
+                "null",
+                "{\"nome\":\"Igor Melo\",\"telefone\":\"123\"}",
+                "{\"nome\":\"Júlia Reis\",\"telefone\":\"11912345678\",\"dataNascimento\":\"1999-09-09\",\"favorito\":true}");
+
+        ImportadorContatos.Resultado resultado = importador(3).importar(entrada(ndjson),
+                FormatoContatos.NDJSON, StandardCharsets.UTF_8);
+
+        assertEquals(5, resultado.linhas());
+        assertEquals(2, resultado.importados());
+        assertEquals(List.of(2L, 3L, 4L), resultado.erros().stream().map(ImportadorContatos.ErroLinha::linha).toList());
+        // O contato mock de ID 1 continua lá; o importado ganhou um ID novo
+        assertEquals("João Silva", contatoService.buscarPorId(1L).orElseThrow().getNome());
+        Contato gabriel = contatoService.buscarPorTexto("Gabriel").get(0);
+        assertTrue(gabriel.getId() > 5);
+        assertEquals(1, gabriel.getVersao());
+    }
+
+    @Test
+    void recusaCsvSemColunasObrigatorias() {
+        assertThrows(IllegalArgumentException.class, () -> importador(10)
+                .importar(entrada("nome,email\nAna,ana@email.com"), FormatoContatos.CSV,
+                        StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkVazao() throws Exception {
+        int quantidade = 500_000;
+        String[] nomes = { "Ana", "Bruno", "Carla", "Diego", "Elisa", "Fábio", "Gisele", "Heitor", "Íris", "João" };
+        String[] sobrenomes = { "Silva", "Santos", "Oliveira", "Souza", "Lima", "Pereira", "Costa", "Rocha" };
+        Enumeration<InputStream> partes = new Enumeration<>() {
+            private int linha;
+
+            private boolean cabecalho = true;
+
+            @Override
+            public boolean hasMoreElements() {
+                return cabecalho || linha < quantidade;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                // Gera o CSV sob demanda, mil linhas por vez, sem montar o arquivo inteiro em memória
+                StringBuilder texto = new StringBuilder();
+                if (cabecalho) {
+                    texto.append("nome,telefone,email,endereco,categoria\n");
+                    cabecalho = false;
+                }
+                for (int fim = Math.min(quantidade, linha + 1_000); linha < fim; linha++) {
+                    String nome = nomes[linha % nomes.length] + " " + sobrenomes[linha / nomes.length % sobrenomes.length]
+                            + " " + sobrenomes[linha / 80 % sobrenomes.length];
+                    texto.append(nome).append(",(11) 9").append(1000_0000 + linha % 9000_0000).append(",c").append(linha)
+                            .append("@email.com,\"Rua ").append(linha % 997).append(", ").append(linha % 5_000)
+                            .append("\",TRABALHO\n");
+                }
+                return entrada(texto.toString());
+            }
+        };
+        ImportadorContatos.Resultado resultado = importador(5_000).importar(new SequenceInputStream(partes),
+                FormatoContatos.CSV, StandardCharsets.UTF_8);
+        assertEquals(quantidade, resultado.importados());
+
+        // Caminho de uma requisição por contato: validação e salvar, com log por contato
+        int individuais = 5_000;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < individuais; i++) {
+            Contato contato = new Contato(null, "Contato Individual", "(11) 91234-5678", "i" + i + "@email.com",
+                    null, null, Categoria.TRABALHO, false);
+            assertTrue(VALIDATOR.validate(contato).isEmpty());
+            contatoService.salvar(contato);
+        }
+        long porRequisicao = individuais * 1_000_000_000L / (System.nanoTime() - inicio);
+
+        System.out.printf("Importação de %,d linhas CSV%n", quantidade);
+        System.out.printf("  importação em lotes:  %,10d linhas/s%n", resultado.linhasPorSegundo());
+        System.out.printf("  contato a contato:    %,10d linhas/s%n", porRequisicao);
+    }
+
+    private static InputStream entrada(String texto) {
+        return new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,140 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Confere o kernel vetorial contra o escalar e, com {@code -Dbenchmark=true},
+ * mede os dois contra o predicado em stream sobre objetos Contato.
+ */
+class KernelFiltroTest {
+
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+
+    @Test
+    void kernelDisponivelIgualAoEscalar() {
+        Random random = new Random(3);
+        Colunas colunas = gerarColunas(10_007, random);
+
+        // Linhas livres no meio das colunas, como após remoções
+        for (int i = 0; i < 100; i++) {
+            int linha = random.nextInt(colunas.linhas());
+            colunas.ocupadas()[linha >>> 6] &= ~(1L << linha);
+        }
+        int diaInicio = (int) LocalDate.of(1970, 1, 1).toEpochDay();
+        int diaFim = (int) LocalDate.of(1990, 12, 31).toEpochDay();
+
+        for (int categoria : new int[] {KernelFiltro.SEM_CATEGORIA, Categoria.AMIGOS.ordinal()}) {
+            for (int favorito : new int[] {KernelFiltro.FAVORITO_QUALQUER, 0, 1}) {
+                for (boolean filtraData : new boolean[] {false, true}) {
+                    long[] esperado = filtrar(KernelFiltro.escalar(), colunas, categoria, favorito,
+                            filtraData, diaInicio, diaFim);
+                    long[] obtido = filtrar(KernelFiltro.disponivel(), colunas, categoria, favorito,
+                            filtraData, diaInicio, diaFim);
+                    assertArrayEquals(esperado, obtido);
+                }
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkContraPredicadoEmStream() {
+        int quantidade = 2_000_000;
+        Colunas colunas = gerarColunas(quantidade, new Random(1));
+        LocalDate inicio = LocalDate.of(1970, 1, 1);
+        LocalDate fim = LocalDate.of(1990, 12, 31);
+        int diaInicio = (int) inicio.toEpochDay();
+        int diaFim = (int) fim.toEpochDay();
+        int categoria = Categoria.AMIGOS.ordinal();
+
+        Predicate<Contato> predicado = contato -> contato.getCategoria() == Categoria.AMIGOS
+                && contato.isFavorito()
+                && contato.getDataNascimento() != null
+                && !contato.getDataNascimento().isBefore(inicio)
+                && !contato.getDataNascimento().isAfter(fim);
+
+        KernelFiltro escalar = KernelFiltro.escalar();
+        KernelFiltro disponivel = KernelFiltro.disponivel();
+
+        long esperado = colunas.contatos().stream().filter(predicado).count();
+        assertEquals(esperado, contar(filtrar(escalar, colunas, categoria, 1, true, diaInicio, diaFim)));
+        assertEquals(esperado, contar(filtrar(disponivel, colunas, categoria, 1, true, diaInicio, diaFim)));
+
+        double stream = medir(() -> colunas.contatos().stream().filter(predicado).count());
+        double kernelEscalar = medir(() -> contar(filtrar(escalar, colunas, categoria, 1, true, diaInicio, diaFim)));
+        double kernelDisponivel = medir(() -> contar(filtrar(disponivel, colunas, categoria, 1, true, diaInicio, diaFim)));
+
+        System.out.printf("Benchmark de filtro com %,d contatos (%,d aceitos)%n", quantidade, esperado);
+        System.out.printf("  stream sobre Contato: %8.2f ms%n", stream);
+        System.out.printf("  kernel escalar:       %8.2f ms (%.1fx)%n", kernelEscalar, stream / kernelEscalar);
+        System.out.printf("  kernel %s: %8.2f ms (%.1fx)%n", disponivel.nome(), kernelDisponivel, stream / kernelDisponivel);
+    }
+
+    private static long[] filtrar(KernelFiltro kernel, Colunas colunas, int categoria, int favorito,
+            boolean filtraData, int diaInicio, int diaFim) {
+        long[] mascara = colunas.ocupadas().clone();
+        kernel.filtrar(colunas.categorias(), colunas.nascimentos(), colunas.favoritos(), colunas.linhas(),
+                categoria, favorito, filtraData, diaInicio, diaFim, mascara);
+        return mascara;
+    }
+
+    private static long contar(long[] mascara) {
+        long total = 0;
+        for (long palavra : mascara) {
+            total += Long.bitCount(palavra);
+        }
+        return total;
+    }
+
+    private static double medir(Runnable execucao) {
+        for (int i = 0; i < 10; i++) {
+            execucao.run();
+        }
+        int repeticoes = 20;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) {
+            execucao.run();
+        }
+        return (System.nanoTime() - inicio) / 1_000_000.0 / repeticoes;
+    }
+
+    private static Colunas gerarColunas(int linhas, Random random) {
+        int palavras = (linhas + 63) >>> 6;
+        byte[] categorias = new byte[linhas];
+        int[] nascimentos = new int[linhas];
+        long[] favoritos = new long[palavras];
+        long[] ocupadas = new long[palavras];
+        List<Contato> contatos = new ArrayList<>(linhas);
+
+        for (int linha = 0; linha < linhas; linha++) {
+            Categoria categoria = CATEGORIAS[random.nextInt(CATEGORIAS.length)];
+            LocalDate nascimento = random.nextInt(10) == 0 ? null
+                    : LocalDate.ofEpochDay(random.nextInt(20_000) - 7_000);
+            boolean favorito = random.nextBoolean();
+
+            categorias[linha] = (byte) categoria.ordinal();
+            nascimentos[linha] = nascimento != null ? (int) nascimento.toEpochDay() : ArmazenamentoColunar.SEM_DATA;
+            if (favorito) {
+                favoritos[linha >>> 6] |= 1L << linha;
+            }
+            ocupadas[linha >>> 6] |= 1L << linha;
+            contatos.add(new Contato((long) linha, "Contato", "(11) 99999-9999", null, null,
+                    nascimento, categoria, favorito));
+        }
+
+        return new Colunas(linhas, categorias, nascimentos, favoritos, ocupadas, contatos);
+    }
+
+    private record Colunas(int linhas, byte[] categorias, int[] nascimentos, long[] favoritos,
+            long[] ocupadas, List<Contato> contatos) {
+    }
+}
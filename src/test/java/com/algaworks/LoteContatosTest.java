@@ -0,0 +1,115 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Aplica lotes com operações válidas e inválidas, com e sem o modo atômico,
+ * e confere os resultados por operação, a versão publicada e os índices.
+ */
+class LoteContatosTest {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final ContatoStore store = new ContatoStore();
+
+    private final ContatoService contatoService = new ContatoService(store);
+
+    private final LoteContatos lote = new LoteContatos(contatoService, VALIDATOR);
+
+    @Test
+    void aplicaAsValidasEmUmaVersaoERelataAsFalhas() {
+        long versao = store.versao();
+        long versaoMaria = contatoService.buscarPorId(2L).orElseThrow().getVersao();
+        List<LoteContatos.Operacao> operacoes = List.of(
+                new LoteContatos.Operacao(LoteContatos.Tipo.CRIAR, 1L, novo("Rita Lopes", true)),
+                new LoteContatos.Operacao(LoteContatos.Tipo.ATUALIZAR, 2L, editado(2L, versaoMaria, "Maria Souza")),
+                new LoteContatos.Operacao(LoteContatos.Tipo.ATUALIZAR, 2L, editado(2L, versaoMaria, "Maria Lima")),
+                new LoteContatos.Operacao(LoteContatos.Tipo.REMOVER, 3L, null),
+                new LoteContatos.Operacao(LoteContatos.Tipo.ATUALIZAR, 3L, editado(3L, 0, "Pedro Alves")),
+                new LoteContatos.Operacao(LoteContatos.Tipo.REMOVER, 99L, null),
+                new LoteContatos.Operacao(LoteContatos.Tipo.CRIAR, null, novo("R2", false)),
+                new LoteContatos.Operacao(null, 4L, null));
+
+        LoteContatos.Resultado resultado = lote.executar(new LoteContatos.Requisicao(false, operacoes));
+
+        assertEquals(List.of(201, 200, 409, 200, 404, 404, 400, 400),
+                resultado.resultados().stream().map(LoteContatos.ResultadoOperacao::status).toList());
+        assertTrue(resultado.aplicado());
+        assertEquals(3, resultado.sucessos());
+        assertEquals(5, resultado.falhas());
+        assertEquals(versao + 1, store.versao());
+
+        // O ID informado na inclusão é ignorado; o contato 1 continua o mesmo
+        Long criado = resultado.resultados().get(0).id();
+        assertEquals(6L, criado);
+        assertEquals("João Silva", contatoService.buscarPorId(1L).orElseThrow().getNome());
+        assertEquals("Maria Souza", contatoService.buscarPorId(2L).orElseThrow().getNome());
+        assertEquals(versaoMaria + 1, contatoService.buscarPorId(2L).orElseThrow().getVersao());
+        assertTrue(contatoService.buscarPorId(3L).isEmpty());
+        assertTrue(contatoService.buscarFavoritos().stream().anyMatch(contato -> contato.getId().equals(criado)));
+        assertEquals(List.of(2L), contatoService.buscarPorTexto("souza").stream().map(Contato::getId).toList());
+    }
+
+    @Test
+    void loteAtomicoComFalhaNaoAlteraNada() {
+        long versao = store.versao();
+        List<Contato> antes = contatoService.buscarTodos();
+        List<LoteContatos.Operacao> operacoes = List.of(
+                new LoteContatos.Operacao(LoteContatos.Tipo.CRIAR, null, novo("Rita Lopes", true)),
+                new LoteContatos.Operacao(LoteContatos.Tipo.REMOVER, 1L, null),
+                new LoteContatos.Operacao(LoteContatos.Tipo.REMOVER, 1L, null));
+
+        LoteContatos.Resultado resultado = lote.executar(new LoteContatos.Requisicao(true, operacoes));
+
+        assertFalse(resultado.aplicado());
+        assertEquals(List.of(424, 424, 404),
+                resultado.resultados().stream().map(LoteContatos.ResultadoOperacao::status).toList());
+        assertEquals(versao, store.versao());
+        assertEquals(antes, contatoService.buscarTodos());
+
+        // Uma operação inválida também cancela o lote, sem chegar ao store
+        LoteContatos.Resultado invalido = lote.executar(new LoteContatos.Requisicao(true, List.of(
+                new LoteContatos.Operacao(LoteContatos.Tipo.REMOVER, 1L, null),
+                new LoteContatos.Operacao(LoteContatos.Tipo.ATUALIZAR, 2L, editado(2L, 0, "M")))));
+        assertEquals(List.of(424, 400),
+                invalido.resultados().stream().map(LoteContatos.ResultadoOperacao::status).toList());
+        assertEquals(versao, store.versao());
+
+        LoteContatos.Resultado aplicado = lote.executar(new LoteContatos.Requisicao(true, operacoes.subList(0, 2)));
+        assertTrue(aplicado.aplicado());
+        assertEquals(versao + 1, store.versao());
+        assertEquals(antes.size(), contatoService.buscarTodos().size());
+    }
+
+    @Test
+    void rejeitaLoteVazioOuGrandeDemais() {
+        assertThrows(IllegalArgumentException.class,
+                () -> lote.executar(new LoteContatos.Requisicao(false, List.of())));
+        List<LoteContatos.Operacao> operacoes = new ArrayList<>(Collections.nCopies(LoteContatos.MAXIMO_OPERACOES + 1,
+                new LoteContatos.Operacao(LoteContatos.Tipo.REMOVER, 1L, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> lote.executar(new LoteContatos.Requisicao(false, operacoes)));
+    }
+
+    private static Contato novo(String nome, boolean favorito) {
+        Contato contato = new Contato(null, nome, "(11) 91234-5678");
+        contato.setFavorito(favorito);
+        return contato;
+    }
+
+    private static Contato editado(Long id, long versao, String nome) {
+        Contato contato = new Contato(id, nome, "(11) 91234-5678");
+        contato.setVersao(versao);
+        return contato;
+    }
+}
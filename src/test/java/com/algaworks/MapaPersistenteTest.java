@@ -0,0 +1,94 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Confere o mapa persistente contra um {@link TreeMap} e verifica que
+ * versões antigas não mudam depois de novas escritas.
+ */
+class MapaPersistenteTest {
+
+    @Test
+    void igualAoTreeMapAposOperacoesAleatorias() {
+        Random random = new Random(11);
+        TreeMap<Long, Long> esperado = new TreeMap<>();
+        MapaPersistente<Long> mapa = MapaPersistente.vazio();
+
+        for (int i = 0; i < 20_000; i++) {
+            // IDs pequenos concentram colisões; alguns grandes forçam a trie a crescer
+            long id = random.nextInt(10) == 0 ? random.nextLong() & Long.MAX_VALUE : random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                esperado.remove(id);
+                mapa = mapa.sem(id);
+            } else {
+                esperado.put(id, (long) i);
+                mapa = mapa.com(id, (long) i);
+            }
+        }
+
+        assertEquals(esperado.size(), mapa.tamanho());
+        assertEquals(new ArrayList<>(esperado.values()), mapa.stream().toList());
+        for (Map.Entry<Long, Long> entrada : esperado.entrySet()) {
+            assertEquals(entrada.getValue(), mapa.get(entrada.getKey()));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            long inicio = random.nextInt(6_000);
+            List<Long> obtido = new ArrayList<>();
+            mapa.aPartirDe(inicio).forEachRemaining(obtido::add);
+            assertEquals(new ArrayList<>(esperado.tailMap(inicio, true).values()), obtido);
+        }
+    }
+
+    @Test
+    void comTodosIgualAInsercoesIndividuais() {
+        Random random = new Random(5);
+        MapaPersistente<Long> base = MapaPersistente.vazio();
+        for (int i = 0; i < 1_000; i++) {
+            base = base.com(random.nextInt(3_000), (long) i);
+        }
+
+        List<Long> lote = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            lote.add(random.nextInt(10) == 0 ? random.nextLong() & Long.MAX_VALUE : random.nextInt(6_000));
+        }
+        List<Long> conteudoBase = base.stream().toList();
+        MapaPersistente<Long> individual = base;
+        for (Long id : lote) {
+            individual = individual.com(id, id);
+        }
+        MapaPersistente<Long> emLote = base.comTodos(lote, Long::longValue);
+
+        assertEquals(individual.tamanho(), emLote.tamanho());
+        assertEquals(individual.stream().toList(), emLote.stream().toList());
+        // A versão de origem não é afetada pelos nós alterados no lugar durante o lote
+        assertEquals(conteudoBase, base.stream().toList());
+    }
+
+    @Test
+    void versoesAntigasPermanecemInalteradas() {
+        MapaPersistente<String> v1 = MapaPersistente.<String>vazio().com(1, "a").com(40, "b");
+        MapaPersistente<String> v2 = v1.com(1, "c").com(5_000, "d").sem(40);
+
+        assertEquals("a", v1.get(1));
+        assertEquals("b", v1.get(40));
+        assertNull(v1.get(5_000));
+        assertEquals(2, v1.tamanho());
+
+        assertEquals("c", v2.get(1));
+        assertNull(v2.get(40));
+        Iterator<String> iterador = v2.iterator();
+        assertEquals("c", iterador.next());
+        assertEquals("d", iterador.next());
+        assertEquals(2, v2.tamanho());
+    }
+}
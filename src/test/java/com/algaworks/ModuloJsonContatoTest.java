@@ -0,0 +1,160 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Confere que o JSON guardado por contato é idêntico ao do serializador
+ * padrão e acompanha as alterações; com {@code -Dbenchmark=true}, mede a
+ * serialização de uma listagem com e sem o módulo.
+ */
+class ModuloJsonContatoTest {
+
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+
+    private final ObjectMapper padrao = Jackson2ObjectMapperBuilder.json().build();
+
+    private final ObjectMapper comModulo = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ModuloJsonContato()).build();
+
+    @Test
+    void listagemIgualAoSerializadorPadrao() throws Exception {
+        ContatoService contatoService = new ContatoService(new ContatoStore());
+        Random random = new Random(41);
+        for (int i = 0; i < 500; i++) {
+            contatoService.salvar(novoContato(random));
+        }
+        for (int i = 0; i < 200; i++) {
+            contatoService.alternarFavorito(1L + random.nextInt(505));
+        }
+
+        ContatoRestController.ApiResponse<List<Contato>> resposta = ContatoRestController.ApiResponse.pagina(
+                "ok", contatoService.buscarTodos(null, null, 1000));
+        String esperado = padrao.writeValueAsString(resposta);
+        assertEquals(esperado, comModulo.writeValueAsString(resposta));
+        // A segunda vez sai do JSON guardado em cada contato
+        assertEquals(esperado, comModulo.writeValueAsString(resposta));
+        assertTrue(resposta.getData().stream().allMatch(contato -> contato.jsonSerializado() != null));
+    }
+
+    @Test
+    void alteracaoGeraNovoJson() throws Exception {
+        ContatoService contatoService = new ContatoService(new ContatoStore());
+        Contato original = contatoService.buscarPorId(1L).orElseThrow();
+        comModulo.writeValueAsString(original);
+        ModuloJsonContato.Serializado guardado = original.jsonSerializado();
+        comModulo.writeValueAsString(original);
+        assertSame(guardado, original.jsonSerializado());
+
+        Contato alterado = contatoService.alternarFavorito(1L).orElseThrow();
+        assertNotSame(original, alterado);
+        assertEquals(padrao.writeValueAsString(alterado), comModulo.writeValueAsString(alterado));
+        assertEquals(padrao.writeValueAsString(original), comModulo.writeValueAsString(original));
+    }
+
+    @Test
+    void outraConfiguracaoNaoReaproveitaJson() throws Exception {
+        ContatoService contatoService = new ContatoService(new ContatoStore());
+        Contato contato = contatoService.buscarPorId(1L).orElseThrow();
+        comModulo.writeValueAsString(contato);
+
+        ObjectMapper snakePadrao = Jackson2ObjectMapperBuilder.json()
+                .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE).build();
+        ObjectMapper snakeComModulo = Jackson2ObjectMapperBuilder.json()
+                .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+                .modulesToInstall(new ModuloJsonContato()).build();
+        assertEquals(snakePadrao.writeValueAsString(contato), snakeComModulo.writeValueAsString(contato));
+        assertEquals(padrao.writeValueAsString(contato), comModulo.writeValueAsString(contato));
+
+        // Features do gerador e pretty printer de um writer do mesmo mapper
+        assertEquals(padrao.writer().with(JsonGenerator.Feature.ESCAPE_NON_ASCII).writeValueAsString(contato),
+                comModulo.writer().with(JsonGenerator.Feature.ESCAPE_NON_ASCII).writeValueAsString(contato));
+        assertEquals(padrao.writerWithDefaultPrettyPrinter().writeValueAsString(List.of(contato)),
+                comModulo.writerWithDefaultPrettyPrinter().writeValueAsString(List.of(contato)));
+        assertEquals(padrao.writeValueAsString(contato), comModulo.writeValueAsString(contato));
+
+        // Recursos que só tratam o destino, como na exportação, reaproveitam o JSON guardado
+        ModuloJsonContato.Serializado guardado = contato.jsonSerializado();
+        StringWriter saida = new StringWriter();
+        try (JsonGenerator gerador = comModulo.getFactory().createGenerator(saida)) {
+            gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gerador.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            comModulo.writeValue(gerador, contato);
+        }
+        assertEquals(padrao.writeValueAsString(contato), saida.toString());
+        assertSame(guardado, contato.jsonSerializado());
+    }
+
+    @Test
+    void contatoNaoPublicadoNaoGuardaJson() throws Exception {
+        Contato contato = new Contato(null, "Rita Lopes", "(11) 91234-5678");
+        comModulo.writeValueAsString(contato);
+        contato.setNome("Rita Moraes");
+        assertEquals(padrao.writeValueAsString(contato), comModulo.writeValueAsString(contato));
+        assertNull(contato.jsonSerializado());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkListagem() throws Exception {
+        ContatoService contatoService = new ContatoService(new ContatoStore());
+        Random random = new Random(1);
+        List<Contato> contatos = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            contatos.add(novoContato(random));
+        }
+        contatoService.importar(contatos);
+        ContatoRestController.ApiResponse<List<Contato>> resposta = ContatoRestController.ApiResponse.pagina(
+                "ok", contatoService.buscarTodos(null, null, 1000));
+
+        double semModulo = medir(() -> serializar(padrao, resposta));
+        double modulo = medir(() -> serializar(comModulo, resposta));
+        System.out.printf("Listagem de 1.000 contatos: padrão %.3f ms, com JSON guardado %.3f ms (%.1fx)%n",
+                semModulo, modulo, semModulo / modulo);
+    }
+
+    private static Contato novoContato(Random random) {
+        return new Contato(null, "Contato " + random.nextInt(1000), "(11) 9" + (1000_0000 + random.nextInt(9000_0000)),
+                random.nextBoolean() ? "contato" + random.nextInt(100) + "@email.com" : null,
+                random.nextBoolean() ? "Rua \"" + (char) ('A' + random.nextInt(26)) + "\", 1" : null,
+                random.nextBoolean() ? LocalDate.of(1950 + random.nextInt(60), 1 + random.nextInt(12), 1) : null,
+                CATEGORIAS[random.nextInt(CATEGORIAS.length)], random.nextBoolean());
+    }
+
+    private static void serializar(ObjectMapper mapper, Object valor) {
+        try {
+            mapper.writeValueAsBytes(valor);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double medir(Runnable execucao) {
+        for (int i = 0; i < 200; i++) {
+            execucao.run();
+        }
+        int repeticoes = 500;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) {
+            execucao.run();
+        }
+        return (System.nanoTime() - inicio) / 1_000_000.0 / repeticoes;
+    }
+}
@@ -0,0 +1,146 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import jakarta.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Grava pelo write-behind em um H2 em memória e confere a coalescência por
+ * ID, a remoção depois da inclusão, a volta à fila de um lote com falha, a
+ * gravação final no encerramento e a recarga pelo {@code carregar()}. Sem a
+ * transação do teste, já que a gravação abre as suas.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PersistenciaJpaTest {
+
+    @Autowired
+    private ContatoRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    void gravaOUltimoEstadoDeCadaContatoERecarrega() {
+        PersistenciaJpa jpa = iniciar(transactionManager);
+        ContatoService contatoService = new ContatoService(new ContatoStore(), Optional.of(jpa));
+        assertEquals(5, jpa.pendentes());
+
+        // Várias escritas no mesmo contato ocupam uma única pendência
+        for (int i = 0; i < 10; i++) {
+            contatoService.alternarFavorito(1L);
+            contatoService.atualizar(2L, novoContato("Maria Souza " + i));
+        }
+        Contato removidoAntes = contatoService.salvar(novoContato("Rita Lopes"));
+        contatoService.remover(removidoAntes.getId());
+        contatoService.remover(3L);
+        assertEquals(6, jpa.pendentes());
+
+        jpa.gravarPendentes();
+        assertEquals(0, jpa.pendentes());
+        assertEquals(descrever(contatoService.buscarTodos()), descrever(repository.findAll(Sort.by("id"))));
+
+        // Remoção de um contato já gravado e escritas pendentes no encerramento
+        Contato removidoDepois = contatoService.salvar(novoContato("Gil Rocha"));
+        jpa.gravarPendentes();
+        contatoService.remover(removidoDepois.getId());
+        contatoService.salvar(novoContato("Lia Moraes"));
+        contatoService.alternarFavorito(4L);
+        List<String> esperado = descrever(contatoService.buscarTodos());
+        jpa.encerrar();
+        assertEquals(esperado, descrever(repository.findAll(Sort.by("id"))));
+
+        // A recarga não volta para a fila de gravação
+        PersistenciaJpa recarregada = iniciar(transactionManager);
+        ContatoService servicoRecarregado = new ContatoService(new ContatoStore(), Optional.of(recarregada));
+        assertEquals(esperado, descrever(servicoRecarregado.buscarTodos()));
+        assertEquals(0, recarregada.pendentes());
+        recarregada.encerrar();
+    }
+
+    @Test
+    void loteComFalhaVoltaParaAFilaSemSobrescreverEscritasNovas() {
+        AtomicReference<Runnable> falha = new AtomicReference<>();
+        PlatformTransactionManager comFalha = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definicao) {
+                Runnable antes = falha.getAndSet(null);
+                if (antes != null) {
+                    antes.run();
+                    throw new CannotCreateTransactionException("Falha simulada do banco");
+                }
+                return transactionManager.getTransaction(definicao);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        };
+        PersistenciaJpa jpa = iniciar(comFalha);
+        ContatoService contatoService = new ContatoService(new ContatoStore(), Optional.of(jpa));
+        jpa.gravarPendentes();
+
+        contatoService.alternarFavorito(1L);
+        contatoService.remover(2L);
+        // Uma escrita no contato 1 chega enquanto o lote com a anterior falha
+        falha.set(() -> contatoService.alternarFavorito(1L));
+        jpa.gravarPendentes();
+        assertEquals(2, jpa.pendentes());
+        assertEquals(5, repository.count());
+
+        jpa.gravarPendentes();
+        assertEquals(0, jpa.pendentes());
+        assertEquals(descrever(contatoService.buscarTodos()), descrever(repository.findAll(Sort.by("id"))));
+        jpa.encerrar();
+    }
+
+    // Intervalo longo: só as gravações chamadas pelo teste e a do encerramento
+    private PersistenciaJpa iniciar(PlatformTransactionManager transacoes) {
+        PersistenciaJpa jpa = new PersistenciaJpa(repository, entityManager, transacoes, 60_000, 1_000);
+        jpa.iniciar();
+        return jpa;
+    }
+
+    private static List<String> descrever(List<Contato> contatos) {
+        return contatos.stream()
+                .map(contato -> contato.getId() + ":" + contato.getVersao() + ":" + contato.getNome() + ":"
+                        + contato.getTelefone() + ":" + contato.getEmail() + ":" + contato.getEndereco() + ":"
+                        + contato.getDataNascimento() + ":" + contato.getCategoria() + ":" + contato.isFavorito())
+                .collect(Collectors.toList());
+    }
+
+    private static Contato novoContato(String nome) {
+        return new Contato(null, nome, "(11) 91234-5678", "contato@email.com", "Rua Á, 10",
+                LocalDate.of(1980, 1, 1), Categoria.AMIGOS, false);
+    }
+}
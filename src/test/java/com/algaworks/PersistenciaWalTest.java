@@ -0,0 +1,282 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Recupera os contatos do snapshot e do log de escrita depois de escritas
+ * aleatórias, rotações de segmento, um registro final corrompido e uma falha
+ * de gravação no meio de um grupo. Com
+ * {@code -Dbenchmark=true}, mede a recuperação de um milhão de contatos.
+ */
+class PersistenciaWalTest {
+
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void recuperaOMesmoEstadoDepoisDeReiniciar() throws Exception {
+        // Snapshot a cada 50 registros, para exercitar rotação e limpeza de segmentos
+        ContatoStore store = new ContatoStore();
+        PersistenciaWal wal = iniciar(store);
+        ContatoService contatoService = new ContatoService(store, Optional.of(wal));
+
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            long id = 1 + random.nextInt(100);
+            switch (random.nextInt(4)) {
+                case 0 -> contatoService.salvar(novoContato(random));
+                case 1 -> contatoService.atualizar(id, novoContato(random));
+                case 2 -> contatoService.remover(id);
+                default -> contatoService.alternarFavorito(id);
+            }
+        }
+        List<String> esperado = descrever(contatoService.buscarTodos());
+        wal.encerrar();
+
+        // Registro pela metade no fim do último segmento, como em uma queda durante a gravação
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            Path ultimo = arquivos.filter(arquivo -> arquivo.toString().endsWith(".wal")).sorted()
+                    .reduce((primeiro, segundo) -> segundo).orElseThrow();
+            Files.write(ultimo, ByteBuffer.allocate(12).putInt(64).putInt(0).putInt(1).array(),
+                    StandardOpenOption.APPEND);
+        }
+
+        ContatoStore recuperado = new ContatoStore();
+        PersistenciaWal walRecuperado = iniciar(recuperado);
+        ContatoService servicoRecuperado = new ContatoService(recuperado, Optional.of(walRecuperado));
+        assertEquals(esperado, descrever(servicoRecuperado.buscarTodos()));
+
+        // Escritas depois da recuperação continuam a partir da versão e do ID gravados
+        Contato novo = servicoRecuperado.salvar(novoContato(random));
+        servicoRecuperado.alternarFavorito(esperado.isEmpty() ? novo.getId() : Long.valueOf(esperado.get(0).split(":")[0]));
+        List<String> esperadoDepois = descrever(servicoRecuperado.buscarTodos());
+        walRecuperado.encerrar();
+
+        ContatoStore ultimo = new ContatoStore();
+        PersistenciaWal walUltimo = iniciar(ultimo);
+        assertEquals(esperadoDepois, descrever(new ContatoService(ultimo, Optional.of(walUltimo)).buscarTodos()));
+        walUltimo.encerrar();
+    }
+
+    @Test
+    void escritasDepoisDeUmaFalhaDeGravacaoSobrevivemARecuperacao() throws Exception {
+        AtomicBoolean falhar = new AtomicBoolean();
+        ContatoStore store = new ContatoStore();
+        PersistenciaWal wal = new PersistenciaWal(store, diretorio.toString(), Long.MAX_VALUE) {
+            @Override
+            FileChannel abrirSegmento(long numero) throws IOException {
+                return new CanalComFalha(super.abrirSegmento(numero), falhar);
+            }
+        };
+        wal.iniciar();
+        ContatoService contatoService = new ContatoService(store, Optional.of(wal));
+
+        Random random = new Random(3);
+        contatoService.salvar(novoContato(random));
+        // Metade do grupo chega ao segmento antes do erro
+        falhar.set(true);
+        Contato duranteFalha = contatoService.salvar(novoContato(random));
+        assertFalse(falhar.get());
+        for (int i = 0; i < 20; i++) {
+            contatoService.salvar(novoContato(random));
+        }
+        contatoService.remover(1L);
+        contatoService.alternarFavorito(duranteFalha.getId());
+        List<String> esperado = descrever(contatoService.buscarTodos());
+
+        // Queda sem encerrar: o estado vem do snapshot da recuperação e do segmento novo
+        ContatoStore recuperado = new ContatoStore();
+        PersistenciaWal walRecuperado = iniciar(recuperado);
+        assertEquals(esperado, descrever(new ContatoService(recuperado, Optional.of(walRecuperado)).buscarTodos()));
+        walRecuperado.encerrar();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkRecuperacao() throws Exception {
+        int quantidade = 1_000_000;
+        ContatoStore store = new ContatoStore();
+        PersistenciaWal wal = new PersistenciaWal(store, diretorio.toString(), Long.MAX_VALUE);
+        wal.iniciar();
+        store.registrarOuvinte(wal);
+
+        Random random = new Random(1);
+        long inicio = System.nanoTime();
+        for (int lote = 0; lote < quantidade / 10_000; lote++) {
+            List<Contato> contatos = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                contatos.add(novoContato(random));
+            }
+            store.inserirTodos(contatos);
+        }
+        double gravacao = (System.nanoTime() - inicio) / 1_000_000.0;
+        wal.encerrar();
+
+        ContatoStore recuperado = new ContatoStore();
+        PersistenciaWal walRecuperado = new PersistenciaWal(recuperado, diretorio.toString(), Long.MAX_VALUE);
+        walRecuperado.iniciar();
+        inicio = System.nanoTime();
+        recuperado.inserirTodos(walRecuperado.carregar());
+        double recuperacao = (System.nanoTime() - inicio) / 1_000_000.0;
+        assertEquals(quantidade, recuperado.tamanho());
+        walRecuperado.encerrar();
+
+        System.out.printf("Log de escrita com %,d contatos%n", quantidade);
+        System.out.printf("  gravação em lotes de 10.000: %8.0f ms%n", gravacao);
+        System.out.printf("  recuperação (snapshot):      %8.0f ms%n", recuperacao);
+    }
+
+    private PersistenciaWal iniciar(ContatoStore store) throws Exception {
+        PersistenciaWal wal = new PersistenciaWal(store, diretorio.toString(), 50);
+        wal.iniciar();
+        return wal;
+    }
+
+    // Canal de segmento que, armado, grava parte dos dados e lança uma IOException
+    private static final class CanalComFalha extends FileChannel {
+
+        private final FileChannel canal;
+
+        private final AtomicBoolean falhar;
+
+        CanalComFalha(FileChannel canal, AtomicBoolean falhar) {
+            this.canal = canal;
+            this.falhar = falhar;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (falhar.compareAndSet(true, false)) {
+                ByteBuffer parte = srcs[offset].duplicate();
+                parte.limit(parte.position() + parte.remaining() / 2);
+                canal.write(parte);
+                canal.force(false);
+                throw new IOException("Falha simulada de gravação");
+            }
+            return canal.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return (int) write(new ByteBuffer[] {src}, 0, 1);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return canal.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return canal.read(dsts, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return canal.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            canal.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return canal.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            canal.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            canal.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return canal.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return canal.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return canal.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return canal.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return canal.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return canal.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return canal.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            canal.close();
+        }
+    }
+
+    private static List<String> descrever(List<Contato> contatos) {
+        return contatos.stream()
+                .map(contato -> contato.getId() + ":" + contato.getVersao() + ":" + contato.getNome() + ":"
+                        + contato.getTelefone() + ":" + contato.getEmail() + ":" + contato.getEndereco() + ":"
+                        + contato.getDataNascimento() + ":" + contato.getCategoria() + ":" + contato.isFavorito() + ":"
+                        + contato.getDataCriacao() + ":" + contato.getDataAtualizacao())
+                .collect(Collectors.toList());
+    }
+
+    private Contato novoContato(Random random) {
+        return new Contato(null, "Contato " + random.nextInt(1000), "(11) 9" + (1000_0000 + random.nextInt(9000_0000)),
+                random.nextBoolean() ? null : "contato" + random.nextInt(100) + "@email.com", "Rua Á, " + random.nextInt(100),
+                random.nextBoolean() ? null : LocalDate.of(1950 + random.nextInt(60), 1, 1),
+                CATEGORIAS[random.nextInt(CATEGORIAS.length)], random.nextBoolean());
+    }
+}
@@ -0,0 +1,90 @@
+package com.algaworks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Confere que aplicar as alterações da sincronização sobre uma cópia
+ * anterior reproduz o estado atual, e quando o cliente deve recarregar tudo.
+ */
+class RegistroAlteracoesTest {
+
+    @Test
+    void sincronizacaoReproduzEstadoAtual() {
+        ContatoService contatoService = new ContatoService(new ContatoStore());
+        Map<Long, Contato> copia = new HashMap<>();
+        contatoService.buscarTodos().forEach(contato -> copia.put(contato.getId(), contato));
+        long marca = contatoService.sincronizar(0, null).marca();
+
+        Random random = new Random(7);
+        for (int rodada = 0; rodada < 5; rodada++) {
+            for (int i = 0; i < 200; i++) {
+                long id = 1 + random.nextInt(60);
+                switch (random.nextInt(3)) {
+                    case 0 -> contatoService.alternarFavorito(id);
+                    case 1 -> contatoService.remover(id);
+                    default -> contatoService.salvar(new Contato(null, "Contato " + i, "(11) 91234-5678"));
+                }
+            }
+            RegistroAlteracoes.Sincronizacao sincronizacao;
+            int alteracoes = 0;
+            do {
+                sincronizacao = contatoService.sincronizar(marca, 50);
+                assertFalse(sincronizacao.ressincronizar());
+                for (RegistroAlteracoes.Delta delta : sincronizacao.alteracoes()) {
+                    assertTrue(delta.sequencia() > marca);
+                    if (delta.removido()) {
+                        assertNull(delta.contato());
+                        copia.remove(delta.id());
+                    } else {
+                        copia.put(delta.id(), delta.contato());
+                    }
+                }
+                alteracoes += sincronizacao.alteracoes().size();
+                marca = sincronizacao.marca();
+            } while (sincronizacao.temMais());
+
+            // Compactado: no máximo uma alteração por contato tocado
+            assertTrue(alteracoes <= 200);
+            // Contato compara só o ID, então a versão confere que cada um está atualizado
+            Map<Long, Long> atual = new HashMap<>();
+            contatoService.buscarTodos().forEach(contato -> atual.put(contato.getId(), contato.getVersao()));
+            Map<Long, Long> sincronizado = new HashMap<>();
+            copia.forEach((id, contato) -> sincronizado.put(id, contato.getVersao()));
+            assertEquals(atual, sincronizado);
+        }
+    }
+
+    @Test
+    void marcaAnteriorAoHorizonteOuDeOutraExecucaoPedeRecarga() {
+        ContatoService contatoService = new ContatoService(new ContatoStore(), Optional.empty(),
+                ContatoService.PESO_MAXIMO_CACHE, 2);
+        long inicio = contatoService.sincronizar(0, null).marca();
+        assertTrue(contatoService.sincronizar(0, null).ressincronizar());
+        assertTrue(contatoService.sincronizar(inicio + 1, null).ressincronizar());
+
+        contatoService.remover(1L);
+        long aposPrimeira = contatoService.sincronizar(inicio, null).marca();
+        contatoService.remover(2L);
+        contatoService.alternarFavorito(3L);
+        assertEquals(List.of(1L, 2L, 3L), contatoService.sincronizar(inicio, null).alteracoes().stream()
+                .map(RegistroAlteracoes.Delta::id).toList());
+
+        // A terceira lápide descarta a primeira, e quem não a viu precisa recarregar
+        contatoService.remover(4L);
+        RegistroAlteracoes.Sincronizacao atrasado = contatoService.sincronizar(inicio, null);
+        assertTrue(atrasado.ressincronizar());
+        assertTrue(atrasado.alteracoes().isEmpty());
+        assertEquals(List.of(2L, 3L, 4L), contatoService.sincronizar(aposPrimeira, null).alteracoes().stream()
+                .map(RegistroAlteracoes.Delta::id).toList());
+    }
+}